@@ -0,0 +1,64 @@
+//
+// ConfigBenchmark.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import com.pollfish.builder.Position;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The request config read path: the comparison processPollfishRequest() makes on every resume,
+ * and the copy-on-write update made by load() and setUserDetails().
+ */
+@State(Scope.Thread)
+public class ConfigBenchmark
+{
+  private PluginHarness harness;
+  private PollfishConfig config;
+  private PollfishConfig applied;
+
+  @Setup
+  public void setUp()
+  {
+    harness = new PluginHarness().init("apiKey", "benchmark").load();
+
+    config = new PollfishConfig.Builder().apiKey("benchmark").requestUUID("user-1234").position(Position.TOP_LEFT).build();
+    applied = config.buildUpon().build();
+  }
+
+  @TearDown
+  public void tearDown()
+  {
+    harness.close();
+  }
+
+  // onResumed() with an unchanged request, the SDK is not re-initialized
+  @Benchmark
+  public void resumeUnchanged()
+  {
+    harness.loader.onResumed(harness.runtime);
+  }
+
+  @Benchmark
+  public boolean hasSameRequest()
+  {
+    return config.hasSameRequestAs(applied);
+  }
+
+  @Benchmark
+  public PollfishConfig update()
+  {
+    return config.buildUpon().padding(10).customMode(true).build();
+  }
+}
@@ -0,0 +1,77 @@
+//
+// EventDispatchBenchmark.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import com.pollfish.builder.Params;
+import com.pollfish.callback.SurveyInfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * SDK callback to Lua listener, through the delegates, dispatchLuaEvent() and the runtime task
+ * that pushes the event table.
+ * <p/>
+ * Each operation is one callback plus the delivery of the event it produced, so the numbers
+ * include the event pool, the survey data copy and event.data in the selected format.
+ */
+@State(Scope.Thread)
+public class EventDispatchBenchmark
+{
+  @Param({"json", "table"})
+  public String dataFormat;
+
+  private PluginHarness harness;
+  private Params params;
+  private SurveyInfo info;
+
+  @Setup(Level.Trial)
+  public void setUp()
+  {
+    harness = new PluginHarness()
+      .init("apiKey", "benchmark", "dataFormat", dataFormat)
+      .load();
+    params = harness.params();
+    info = new SurveyInfo(120, 40, 8, "Pollfish/Basic", "Coins", 200, 1000);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown()
+  {
+    harness.close();
+  }
+
+  @Benchmark
+  public int surveyReceived()
+  {
+    params.surveyReceivedListener.onPollfishSurveyReceived(info);
+    return harness.runPendingTasks();
+  }
+
+  @Benchmark
+  public int surveyCompleted()
+  {
+    params.surveyCompletedListener.onPollfishSurveyCompleted(info);
+    return harness.runPendingTasks();
+  }
+
+  // an event without data
+  @Benchmark
+  public int surveyNotAvailable()
+  {
+    params.surveyNotAvailableListener.onPollfishSurveyNotAvailable();
+    return harness.runPendingTasks();
+  }
+}
@@ -0,0 +1,94 @@
+//
+// OptionsBenchmark.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import com.naef.jnlua.LuaState;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Decoding the options tables of init(), load() and setUserDetails(), and the Lua calls that
+ * decode and apply them.
+ */
+@State(Scope.Thread)
+public class OptionsBenchmark
+{
+  private final LuaState L = new LuaState();
+  private final LuaOptions.ErrorHandler errors = message -> {
+    throw new IllegalStateException(message);
+  };
+
+  private LuaState.Table initOptions;
+  private LuaState.Table loadOptions;
+  private LuaState.Table userOptions;
+  private PluginHarness harness;
+
+  @Setup
+  public void setUp()
+  {
+    initOptions = PluginHarness.table("apiKey", "benchmark", "developerMode", true, "rewardMode", true,
+      "dataFormat", "table", "prefetch", true, "prefetchTTL", 60000, "logLevel", "warning",
+      "retry", PluginHarness.table("baseDelay", 1000, "multiplier", 2, "maxAttempts", 5));
+    loadOptions = PluginHarness.table("yAlign", "top", "xAlign", "left", "padding", 10, "customMode", true);
+    userOptions = PluginHarness.table("gender", "female", "requestUUID", "user-1234", "age", 30,
+      "location", PluginHarness.table("latitude", 37.98, "longitude", 23.73));
+
+    harness = new PluginHarness().init("apiKey", "benchmark").load();
+  }
+
+  @TearDown
+  public void tearDown()
+  {
+    harness.close();
+  }
+
+  @Benchmark
+  public LuaOptions.Values decodeInit()
+  {
+    return decode(PluginOptions.INIT, initOptions);
+  }
+
+  @Benchmark
+  public LuaOptions.Values decodeLoad()
+  {
+    return decode(PluginOptions.LOAD, loadOptions);
+  }
+
+  @Benchmark
+  public LuaOptions.Values decodeUser()
+  {
+    return decode(PluginOptions.USER, userOptions);
+  }
+
+  // pollfish.load(options), decodes the options, updates the config and requests a survey
+  @Benchmark
+  public int load()
+  {
+    return harness.call("load", loadOptions);
+  }
+
+  // pollfish.setUserDetails(options), decodes the options and updates the config
+  @Benchmark
+  public int setUserDetails()
+  {
+    return harness.call("setUserDetails", userOptions);
+  }
+
+  private LuaOptions.Values decode(LuaOptions options, LuaState.Table table)
+  {
+    L.setTop(0);
+    L.push(table);
+    return options.decode(L, 1, errors);
+  }
+}
@@ -0,0 +1,57 @@
+//
+// SurveyDataBenchmark.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import com.naef.jnlua.LuaState;
+import com.pollfish.callback.SurveyInfo;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Building event.data: the copy of the SDK survey info, and its JSON and Lua table forms.
+ */
+@State(Scope.Thread)
+public class SurveyDataBenchmark
+{
+  private final LuaState L = new LuaState();
+  private SurveyInfo info;
+  private SurveyData data;
+
+  @Setup
+  public void setUp()
+  {
+    info = new SurveyInfo(120, 40, 8, "Pollfish/Basic", "Coins", 200, 1000);
+    data = SurveyData.from(info);
+  }
+
+  @Benchmark
+  public SurveyData from()
+  {
+    return SurveyData.from(info);
+  }
+
+  @Benchmark
+  public String toJSON()
+  {
+    return data.toJSON();
+  }
+
+  @Benchmark
+  public Object pushTo()
+  {
+    data.pushTo(L);
+    Object table = L.get(-1);
+    L.setTop(0);
+    return table;
+  }
+}
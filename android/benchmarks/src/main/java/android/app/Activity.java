@@ -0,0 +1,34 @@
+//
+// Activity.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.app;
+
+import android.content.Context;
+
+import java.util.concurrent.Executor;
+
+/**
+ * JVM stand-in for an activity.
+ * <p/>
+ * runOnUiThread() hands the runnable to a settable executor, which runs it inline by default.
+ */
+public class Activity extends Context
+{
+  private volatile Executor uiThread = Runnable::run;
+
+  public void runOnUiThread(Runnable action)
+  {
+    uiThread.execute(action);
+  }
+
+  public void setUiThread(Executor executor)
+  {
+    uiThread = executor;
+  }
+}
@@ -0,0 +1,15 @@
+//
+// ContentResolver.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.content;
+
+// JVM stand-in
+public class ContentResolver
+{
+}
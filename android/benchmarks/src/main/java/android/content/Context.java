@@ -0,0 +1,57 @@
+//
+// Context.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.content;
+
+import android.content.pm.PackageManager;
+
+import java.io.File;
+
+/**
+ * JVM stand-in for an application context.
+ * <p/>
+ * Files go to a "pollfish-benchmarks" directory under java.io.tmpdir.
+ */
+public class Context
+{
+  private static final PackageManager packageManager = new PackageManager();
+  private static final ContentResolver contentResolver = new ContentResolver();
+
+  public PackageManager getPackageManager()
+  {
+    return packageManager;
+  }
+
+  public String getPackageName()
+  {
+    return "plugin.pollfish.benchmarks";
+  }
+
+  public ContentResolver getContentResolver()
+  {
+    return contentResolver;
+  }
+
+  public Context getApplicationContext()
+  {
+    return this;
+  }
+
+  public File getFilesDir()
+  {
+    File directory = new File(System.getProperty("java.io.tmpdir"), "pollfish-benchmarks");
+    directory.mkdirs();
+    return directory;
+  }
+
+  public File getExternalFilesDir(String type)
+  {
+    return null;
+  }
+}
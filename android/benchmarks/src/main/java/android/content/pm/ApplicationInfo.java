@@ -0,0 +1,18 @@
+//
+// ApplicationInfo.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.content.pm;
+
+import android.os.Bundle;
+
+// JVM stand-in
+public class ApplicationInfo
+{
+  public Bundle metaData;
+}
@@ -0,0 +1,16 @@
+//
+// PackageInfo.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.content.pm;
+
+// JVM stand-in
+public class PackageInfo
+{
+  public String versionName;
+}
@@ -0,0 +1,39 @@
+//
+// PackageManager.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.content.pm;
+
+// JVM stand-in, every package is version "1.0" without any meta-data
+public class PackageManager
+{
+  public static final int GET_META_DATA = 128;
+
+  public static class NameNotFoundException extends Exception
+  {
+  }
+
+  public PackageInfo getPackageInfo(String packageName, int flags) throws NameNotFoundException
+  {
+    PackageInfo info = new PackageInfo();
+    info.versionName = "1.0";
+    return info;
+  }
+
+  public ApplicationInfo getApplicationInfo(String packageName, int flags) throws NameNotFoundException
+  {
+    ApplicationInfo info = new ApplicationInfo();
+    info.metaData = new android.os.Bundle();
+    return info;
+  }
+
+  public CharSequence getApplicationLabel(ApplicationInfo info)
+  {
+    return "Pollfish Benchmarks";
+  }
+}
@@ -0,0 +1,25 @@
+//
+// Build.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.os;
+
+// JVM stand-in for the build constants
+public class Build
+{
+  public static class VERSION
+  {
+    public static final int SDK_INT = 33;
+  }
+
+  public static class VERSION_CODES
+  {
+    public static final int JELLY_BEAN_MR2 = 18;
+    public static final int Q = 29;
+  }
+}
@@ -0,0 +1,45 @@
+//
+// Bundle.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.os;
+
+import java.util.HashMap;
+import java.util.Set;
+
+// JVM stand-in, a plain map
+public class Bundle
+{
+  private final HashMap<String, Object> values = new HashMap<>();
+
+  public Set<String> keySet()
+  {
+    return values.keySet();
+  }
+
+  public Object get(String key)
+  {
+    return values.get(key);
+  }
+
+  public String getString(String key)
+  {
+    Object value = values.get(key);
+    return (value instanceof String) ? (String)value : null;
+  }
+
+  public boolean containsKey(String key)
+  {
+    return values.containsKey(key);
+  }
+
+  public void putString(String key, String value)
+  {
+    values.put(key, value);
+  }
+}
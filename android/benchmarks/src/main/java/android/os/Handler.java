@@ -0,0 +1,32 @@
+//
+// Handler.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.os;
+
+// JVM stand-in, runs posted runnables immediately
+public class Handler
+{
+  public Handler()
+  {
+  }
+
+  public Handler(Looper looper)
+  {
+  }
+
+  public boolean post(Runnable runnable)
+  {
+    runnable.run();
+    return true;
+  }
+
+  public void removeCallbacks(Runnable runnable)
+  {
+  }
+}
@@ -0,0 +1,24 @@
+//
+// Looper.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.os;
+
+// JVM stand-in, there is no main looper on the JVM
+public class Looper
+{
+  public static Looper getMainLooper()
+  {
+    return null;
+  }
+
+  public static Looper myLooper()
+  {
+    return null;
+  }
+}
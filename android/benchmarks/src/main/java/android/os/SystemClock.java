@@ -0,0 +1,37 @@
+//
+// SystemClock.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.os;
+
+// JVM stand-in, based on the monotonic nanosecond clock, which tests can move forward
+public class SystemClock
+{
+  private static volatile long offsetNanos = 0;
+
+  public static long elapsedRealtime()
+  {
+    return elapsedRealtimeNanos() / 1000000;
+  }
+
+  public static long elapsedRealtimeNanos()
+  {
+    return System.nanoTime() + offsetNanos;
+  }
+
+  public static long uptimeMillis()
+  {
+    return elapsedRealtime();
+  }
+
+  // pretend the given time has passed, for timers that would take too long to wait for
+  public static void advance(long ms)
+  {
+    offsetNanos += ms * 1000000;
+  }
+}
@@ -0,0 +1,27 @@
+//
+// Trace.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.os;
+
+// JVM stand-in, tracing is a no-op
+public class Trace
+{
+  public static void beginSection(String sectionName)
+  {
+  }
+
+  public static void endSection()
+  {
+  }
+
+  public static boolean isEnabled()
+  {
+    return false;
+  }
+}
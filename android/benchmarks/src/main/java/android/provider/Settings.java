@@ -0,0 +1,26 @@
+//
+// Settings.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.provider;
+
+import android.content.ContentResolver;
+
+// JVM stand-in, no secure settings are available
+public class Settings
+{
+  public static class Secure
+  {
+    public static final String ANDROID_ID = "android_id";
+
+    public static String getString(ContentResolver resolver, String name)
+    {
+      return null;
+    }
+  }
+}
@@ -0,0 +1,54 @@
+//
+// Log.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package android.util;
+
+/**
+ * JVM stand-in for the Android log.
+ * <p/>
+ * Quiet by default so logging does not dominate the measurements, set the "pollfish.log"
+ * system property to print to stderr.
+ */
+public class Log
+{
+  private static final boolean isEnabled = System.getProperty("pollfish.log") != null;
+
+  public static int v(String tag, String msg)
+  {
+    return print("V", tag, msg);
+  }
+
+  public static int d(String tag, String msg)
+  {
+    return print("D", tag, msg);
+  }
+
+  public static int i(String tag, String msg)
+  {
+    return print("I", tag, msg);
+  }
+
+  public static int w(String tag, String msg)
+  {
+    return print("W", tag, msg);
+  }
+
+  public static int e(String tag, String msg)
+  {
+    return print("E", tag, msg);
+  }
+
+  private static int print(String level, String tag, String msg)
+  {
+    if (isEnabled) {
+      System.err.println(level + "/" + tag + ": " + msg);
+    }
+    return 0;
+  }
+}
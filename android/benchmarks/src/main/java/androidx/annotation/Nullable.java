@@ -0,0 +1,19 @@
+//
+// Nullable.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package androidx.annotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+
+// JVM stand-in for the androidx annotation
+@Retention(RetentionPolicy.CLASS)
+public @interface Nullable
+{
+}
@@ -0,0 +1,17 @@
+//
+// CoronaActivity.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.ansca.corona;
+
+import android.app.Activity;
+
+// JVM stand-in for the Corona activity
+public class CoronaActivity extends Activity
+{
+}
@@ -0,0 +1,57 @@
+//
+// CoronaEnvironment.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.ansca.corona;
+
+import android.content.Context;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * JVM stand-in for the Corona environment.
+ * <p/>
+ * The activity and context are set by the harness, registered runtime listeners are kept so the
+ * harness can deliver the runtime events.
+ */
+public class CoronaEnvironment
+{
+  private static final CopyOnWriteArrayList<CoronaRuntimeListener> listeners = new CopyOnWriteArrayList<>();
+  private static volatile CoronaActivity activity = null;
+  private static volatile Context context = null;
+
+  public static void addRuntimeListener(CoronaRuntimeListener listener)
+  {
+    listeners.add(listener);
+  }
+
+  public static void removeRuntimeListener(CoronaRuntimeListener listener)
+  {
+    listeners.remove(listener);
+  }
+
+  public static CoronaActivity getCoronaActivity()
+  {
+    return activity;
+  }
+
+  public static void setCoronaActivity(CoronaActivity coronaActivity)
+  {
+    activity = coronaActivity;
+  }
+
+  public static Context getApplicationContext()
+  {
+    return context;
+  }
+
+  public static void setApplicationContext(Context applicationContext)
+  {
+    context = applicationContext;
+  }
+}
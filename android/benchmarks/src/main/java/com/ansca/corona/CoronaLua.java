@@ -0,0 +1,68 @@
+//
+// CoronaLua.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.ansca.corona;
+
+import com.naef.jnlua.JavaFunction;
+import com.naef.jnlua.LuaState;
+import com.naef.jnlua.LuaType;
+
+/**
+ * JVM stand-in for the Corona Lua helpers, backed by the in-memory {@link LuaState}.
+ * <p/>
+ * Listeners are Java functions; a dispatched event is passed to the listener on the stack.
+ */
+public class CoronaLua
+{
+  public static final int REFNIL = -1;
+
+  public static int newRef(LuaState L, int index)
+  {
+    return L.ref(index);
+  }
+
+  public static void deleteRef(LuaState L, int ref)
+  {
+    L.unref(ref);
+  }
+
+  public static boolean isListener(LuaState L, int index, String eventName)
+  {
+    return (L.type(index) == LuaType.FUNCTION) || (L.type(index) == LuaType.TABLE);
+  }
+
+  // push { name = eventName }
+  public static void newEvent(LuaState L, String eventName)
+  {
+    L.newTable();
+    L.pushString(eventName);
+    L.setField(-2, CoronaLuaEvent.NAME_KEY);
+  }
+
+  public static void pushValue(LuaState L, Object value)
+  {
+    L.push(value);
+  }
+
+  // call the listener with the event on the top of the stack, the event is popped
+  public static void dispatchEvent(LuaState L, int ref, int nresults) throws Exception
+  {
+    int top = L.getTop();
+    Object listener = L.getRef(ref);
+
+    try {
+      if (listener instanceof JavaFunction) {
+        ((JavaFunction)listener).invoke(L);
+      }
+    }
+    finally {
+      L.setTop(top - 1);
+    }
+  }
+}
@@ -0,0 +1,19 @@
+//
+// CoronaLuaEvent.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.ansca.corona;
+
+// JVM stand-in for the Corona event keys
+public class CoronaLuaEvent
+{
+  public static final String ISERROR_KEY = "isError";
+  public static final String PROVIDER_KEY = "provider";
+  public static final String RESPONSE_KEY = "response";
+  public static final String NAME_KEY = "name";
+}
@@ -0,0 +1,68 @@
+//
+// CoronaRuntime.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.ansca.corona;
+
+import com.naef.jnlua.LuaState;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * JVM stand-in for the Corona runtime.
+ * <p/>
+ * Tasks sent through a {@link CoronaRuntimeTaskDispatcher} are queued from any thread and run
+ * by whoever owns the runtime, with {@link #runPendingTasks()}, like the Corona render thread.
+ */
+public class CoronaRuntime
+{
+  private final LuaState luaState;
+  private final ConcurrentLinkedQueue<CoronaRuntimeTask> tasks = new ConcurrentLinkedQueue<>();
+  private volatile boolean isRunning = true;
+
+  public CoronaRuntime(LuaState luaState)
+  {
+    this.luaState = luaState;
+  }
+
+  public LuaState getLuaState()
+  {
+    return luaState;
+  }
+
+  public boolean isRunning()
+  {
+    return isRunning;
+  }
+
+  public void setRunning(boolean running)
+  {
+    isRunning = running;
+  }
+
+  void post(CoronaRuntimeTask task)
+  {
+    tasks.add(task);
+  }
+
+  // run the queued tasks on the calling thread, returns the number of tasks run
+  public int runPendingTasks()
+  {
+    int count = 0;
+    for (CoronaRuntimeTask task = tasks.poll(); task != null; task = tasks.poll()) {
+      task.executeUsing(this);
+      count++;
+    }
+    return count;
+  }
+
+  public int getPendingTaskCount()
+  {
+    return tasks.size();
+  }
+}
@@ -0,0 +1,20 @@
+//
+// CoronaRuntimeListener.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.ansca.corona;
+
+// JVM stand-in for the Corona interface
+public interface CoronaRuntimeListener
+{
+  void onLoaded(CoronaRuntime runtime);
+  void onStarted(CoronaRuntime runtime);
+  void onSuspended(CoronaRuntime runtime);
+  void onResumed(CoronaRuntime runtime);
+  void onExiting(CoronaRuntime runtime);
+}
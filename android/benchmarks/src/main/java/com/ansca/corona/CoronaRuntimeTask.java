@@ -0,0 +1,16 @@
+//
+// CoronaRuntimeTask.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.ansca.corona;
+
+// JVM stand-in for the Corona interface
+public interface CoronaRuntimeTask
+{
+  void executeUsing(CoronaRuntime runtime);
+}
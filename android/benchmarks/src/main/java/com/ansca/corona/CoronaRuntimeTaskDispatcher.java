@@ -0,0 +1,31 @@
+//
+// CoronaRuntimeTaskDispatcher.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.ansca.corona;
+
+// JVM stand-in, queues the tasks on the runtime
+public class CoronaRuntimeTaskDispatcher
+{
+  private final CoronaRuntime runtime;
+
+  public CoronaRuntimeTaskDispatcher(CoronaRuntime runtime)
+  {
+    this.runtime = runtime;
+  }
+
+  public void send(CoronaRuntimeTask task)
+  {
+    runtime.post(task);
+  }
+
+  public boolean isRuntimeAvailable()
+  {
+    return runtime.isRunning();
+  }
+}
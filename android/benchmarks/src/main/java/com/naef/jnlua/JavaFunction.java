@@ -0,0 +1,16 @@
+//
+// JavaFunction.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.naef.jnlua;
+
+// JVM stand-in for the jnlua interface
+public interface JavaFunction
+{
+  int invoke(LuaState L);
+}
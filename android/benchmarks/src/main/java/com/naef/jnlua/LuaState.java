@@ -0,0 +1,401 @@
+//
+// LuaState.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.naef.jnlua;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * In-memory stand-in for the jnlua Lua state, for running the plugin on a plain JVM.
+ * <p/>
+ * Implements the subset of the API the plugin uses, with the same stack semantics (1 based
+ * indices, negative indices relative to the top). Values are held as Java objects: null for nil,
+ * Boolean, Double, String, {@link Table} and {@link JavaFunction}. Not thread safe, like the real
+ * state it must only be used from the thread that owns it.
+ */
+public class LuaState
+{
+  private final ArrayList<Object> stack = new ArrayList<>();
+  private final HashMap<String, Object> globals = new HashMap<>();
+  private final ArrayList<Object> registry = new ArrayList<>();
+
+  // a Lua table, with insertion-ordered traversal
+  public static final class Table
+  {
+    private final ArrayList<Object> keys = new ArrayList<>();
+    private final ArrayList<Object> values = new ArrayList<>();
+    private final HashMap<Object, Integer> index = new HashMap<>();
+
+    public Object get(Object key)
+    {
+      Integer slot = index.get(normalize(key));
+      return (slot == null) ? null : values.get(slot);
+    }
+
+    public Table set(Object key, Object value)
+    {
+      key = normalize(key);
+      value = normalize(value);
+      Integer slot = index.get(key);
+      if (slot != null) {
+        values.set(slot, value);
+      }
+      else if (value != null) {
+        index.put(key, keys.size());
+        keys.add(key);
+        values.add(value);
+      }
+      return this;
+    }
+
+    // number of consecutive integer keys starting at 1
+    public int length()
+    {
+      int n = 0;
+      while (get((double)(n + 1)) != null) {
+        n++;
+      }
+      return n;
+    }
+
+    // slot of the first non-nil entry after the given key, -1 at the end
+    int nextSlot(Object key)
+    {
+      int slot = 0;
+      if (key != null) {
+        Integer current = index.get(normalize(key));
+        if (current == null) {
+          throw new IllegalArgumentException("invalid key to 'next'");
+        }
+        slot = current + 1;
+      }
+
+      while ((slot < keys.size()) && (values.get(slot) == null)) {
+        slot++;
+      }
+      return (slot < keys.size()) ? slot : -1;
+    }
+  }
+
+  // numbers are doubles in Lua, so integers are stored as doubles too
+  private static Object normalize(Object key)
+  {
+    return (key instanceof Number) ? (Object)((Number)key).doubleValue() : key;
+  }
+
+  // -------------------------------------------------------------------
+  // stack
+  // -------------------------------------------------------------------
+
+  public int getTop()
+  {
+    return stack.size();
+  }
+
+  public void setTop(int index)
+  {
+    int top = absIndex(index);
+    while (stack.size() > top) {
+      stack.remove(stack.size() - 1);
+    }
+    while (stack.size() < top) {
+      stack.add(null);
+    }
+  }
+
+  public int absIndex(int index)
+  {
+    return (index < 0) ? stack.size() + index + 1 : index;
+  }
+
+  public void pop(int count)
+  {
+    setTop(-count - 1);
+  }
+
+  // the value at the given index, null for nil or an index beyond the top
+  public Object get(int index)
+  {
+    int slot = absIndex(index);
+    return ((slot < 1) || (slot > stack.size())) ? null : stack.get(slot - 1);
+  }
+
+  // push any supported Java value
+  public void push(Object value)
+  {
+    stack.add(normalize(value));
+  }
+
+  public void pushNil()
+  {
+    stack.add(null);
+  }
+
+  public void pushBoolean(boolean value)
+  {
+    stack.add(value);
+  }
+
+  public void pushNumber(double value)
+  {
+    stack.add(value);
+  }
+
+  public void pushInteger(int value)
+  {
+    stack.add((double)value);
+  }
+
+  public void pushString(String value)
+  {
+    stack.add(value);
+  }
+
+  public void pushValue(int index)
+  {
+    stack.add(get(index));
+  }
+
+  // -------------------------------------------------------------------
+  // types and conversions
+  // -------------------------------------------------------------------
+
+  public LuaType type(int index)
+  {
+    Object value = get(index);
+
+    if (value == null) {
+      return LuaType.NIL;
+    }
+    if (value instanceof Boolean) {
+      return LuaType.BOOLEAN;
+    }
+    if (value instanceof Double) {
+      return LuaType.NUMBER;
+    }
+    if (value instanceof String) {
+      return LuaType.STRING;
+    }
+    if (value instanceof Table) {
+      return LuaType.TABLE;
+    }
+    if (value instanceof JavaFunction) {
+      return LuaType.FUNCTION;
+    }
+    return LuaType.USERDATA;
+  }
+
+  public String typeName(int index)
+  {
+    return type(index).displayText();
+  }
+
+  public boolean isNoneOrNil(int index)
+  {
+    return get(index) == null;
+  }
+
+  public boolean isNil(int index)
+  {
+    return get(index) == null;
+  }
+
+  public boolean isTable(int index)
+  {
+    return get(index) instanceof Table;
+  }
+
+  public String toString(int index)
+  {
+    Object value = get(index);
+
+    if (value instanceof String) {
+      return (String)value;
+    }
+    if (value instanceof Double) {
+      double number = (Double)value;
+      return (number == Math.rint(number)) ? Long.toString((long)number) : Double.toString(number);
+    }
+    return null;
+  }
+
+  public double toNumber(int index)
+  {
+    Object value = get(index);
+
+    if (value instanceof Double) {
+      return (Double)value;
+    }
+    if (value instanceof String) {
+      try {
+        return Double.parseDouble((String)value);
+      }
+      catch (NumberFormatException e) {
+        return 0;
+      }
+    }
+    return 0;
+  }
+
+  public int toInteger(int index)
+  {
+    return (int)toNumber(index);
+  }
+
+  public boolean toBoolean(int index)
+  {
+    Object value = get(index);
+    return (value != null) && (! Boolean.FALSE.equals(value));
+  }
+
+  // -------------------------------------------------------------------
+  // tables
+  // -------------------------------------------------------------------
+
+  public void newTable()
+  {
+    stack.add(new Table());
+  }
+
+  public void newTable(int arrayCount, int recordCount)
+  {
+    stack.add(new Table());
+  }
+
+  // t[k] = v, where t is at the given index and v is on the top of the stack
+  public void setField(int index, String key)
+  {
+    Table table = table(index);
+    table.set(key, get(-1));
+    pop(1);
+  }
+
+  public void getField(int index, String key)
+  {
+    stack.add(table(index).get(key));
+  }
+
+  // t[k] = v, where k is just below the top and v is on the top of the stack
+  public void rawSet(int index)
+  {
+    Table table = table(index);
+    table.set(get(-2), get(-1));
+    pop(2);
+  }
+
+  public void rawSet(int index, int key)
+  {
+    Table table = table(index);
+    table.set((double)key, get(-1));
+    pop(1);
+  }
+
+  public void rawGet(int index, int key)
+  {
+    stack.add(table(index).get((double)key));
+  }
+
+  public int length(int index)
+  {
+    Object value = get(index);
+    if (value instanceof String) {
+      return ((String)value).length();
+    }
+    return (value instanceof Table) ? ((Table)value).length() : 0;
+  }
+
+  // pops a key and pushes the next key and value, returns false at the end of the table
+  public boolean next(int index)
+  {
+    Table table = table(index);
+    Object key = get(-1);
+    pop(1);
+
+    int slot = table.nextSlot(key);
+    if (slot < 0) {
+      return false;
+    }
+
+    stack.add(table.keys.get(slot));
+    stack.add(table.values.get(slot));
+    return true;
+  }
+
+  private Table table(int index)
+  {
+    Object value = get(index);
+    if (! (value instanceof Table)) {
+      throw new IllegalArgumentException("table expected, got " + typeName(index));
+    }
+    return (Table)value;
+  }
+
+  // -------------------------------------------------------------------
+  // globals, registry and calls
+  // -------------------------------------------------------------------
+
+  // register the functions in a global table with the given name and leave it on the stack
+  public void register(String name, NamedJavaFunction[] functions)
+  {
+    Table library = new Table();
+    for (NamedJavaFunction function : functions) {
+      library.set(function.getName(), function);
+    }
+    globals.put(name, library);
+    stack.add(library);
+  }
+
+  public Object getGlobal(String name)
+  {
+    return globals.get(name);
+  }
+
+  // store the value at the given index, returns the reference
+  public int ref(int index)
+  {
+    registry.add(get(index));
+    return registry.size();
+  }
+
+  public void unref(int reference)
+  {
+    if ((reference > 0) && (reference <= registry.size())) {
+      registry.set(reference - 1, null);
+    }
+  }
+
+  public Object getRef(int reference)
+  {
+    return ((reference > 0) && (reference <= registry.size())) ? registry.get(reference - 1) : null;
+  }
+
+  // call library.function(args...) with a fresh stack, the results are left on the stack
+  public int call(String library, String function, Object... args)
+  {
+    Object target = ((Table)globals.get(library)).get(function);
+    if (! (target instanceof JavaFunction)) {
+      throw new IllegalArgumentException(library + "." + function + " is not a function");
+    }
+
+    stack.clear();
+    for (Object arg : args) {
+      push(arg);
+    }
+
+    int results = ((JavaFunction)target).invoke(this);
+
+    // keep only the results
+    int base = stack.size() - results;
+    for (int i = 0; i < base; i++) {
+      stack.remove(0);
+    }
+    return results;
+  }
+}
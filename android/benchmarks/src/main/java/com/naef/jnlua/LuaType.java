@@ -0,0 +1,29 @@
+//
+// LuaType.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.naef.jnlua;
+
+// JVM stand-in for the jnlua enum
+public enum LuaType
+{
+  NIL,
+  BOOLEAN,
+  LIGHTUSERDATA,
+  NUMBER,
+  STRING,
+  TABLE,
+  FUNCTION,
+  USERDATA,
+  THREAD;
+
+  public String displayText()
+  {
+    return name().toLowerCase();
+  }
+}
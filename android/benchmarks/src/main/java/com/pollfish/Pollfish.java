@@ -0,0 +1,69 @@
+//
+// Pollfish.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.pollfish;
+
+import android.app.Activity;
+
+import com.pollfish.builder.Params;
+
+/**
+ * JVM stand-in for the Pollfish SDK entry points.
+ * <p/>
+ * Nothing is shown or requested, the calls are only recorded so a harness can check them and
+ * fire the listeners of the last params itself.
+ */
+public class Pollfish
+{
+  private static volatile Params lastParams = null;
+  private static volatile boolean isPresent = false;
+  private static volatile boolean isPanelOpen = false;
+  private static volatile long initCount = 0;
+
+  public static void initWith(Activity activity, Params params)
+  {
+    lastParams = params;
+    initCount++;
+  }
+
+  public static void show()
+  {
+    isPanelOpen = isPresent;
+  }
+
+  public static void hide()
+  {
+    isPanelOpen = false;
+  }
+
+  public static boolean isPollfishPresent()
+  {
+    return isPresent;
+  }
+
+  public static boolean isPollfishPanelOpen()
+  {
+    return isPanelOpen;
+  }
+
+  public static void setPollfishPresent(boolean present)
+  {
+    isPresent = present;
+  }
+
+  public static Params getLastParams()
+  {
+    return lastParams;
+  }
+
+  public static long getInitCount()
+  {
+    return initCount;
+  }
+}
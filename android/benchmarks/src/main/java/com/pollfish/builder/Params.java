@@ -0,0 +1,164 @@
+//
+// Params.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.pollfish.builder;
+
+import com.pollfish.callback.PollfishClosedListener;
+import com.pollfish.callback.PollfishOpenedListener;
+import com.pollfish.callback.PollfishSurveyCompletedListener;
+import com.pollfish.callback.PollfishSurveyNotAvailableListener;
+import com.pollfish.callback.PollfishSurveyReceivedListener;
+import com.pollfish.callback.PollfishUserNotEligibleListener;
+
+/**
+ * JVM stand-in for the SDK request parameters.
+ * <p/>
+ * The values and listeners are public so a harness can inspect them and fire the callbacks.
+ */
+public class Params
+{
+  public final String apiKey;
+  public final Position indicatorPosition;
+  public final int indicatorPadding;
+  public final boolean releaseMode;
+  public final boolean offerwallMode;
+  public final boolean rewardMode;
+  public final String requestUUID;
+  public final UserProperties userProperties;
+  public final PollfishSurveyReceivedListener surveyReceivedListener;
+  public final PollfishSurveyCompletedListener surveyCompletedListener;
+  public final PollfishSurveyNotAvailableListener surveyNotAvailableListener;
+  public final PollfishUserNotEligibleListener userNotEligibleListener;
+  public final PollfishOpenedListener openedListener;
+  public final PollfishClosedListener closedListener;
+
+  private Params(Builder builder)
+  {
+    apiKey = builder.apiKey;
+    indicatorPosition = builder.indicatorPosition;
+    indicatorPadding = builder.indicatorPadding;
+    releaseMode = builder.releaseMode;
+    offerwallMode = builder.offerwallMode;
+    rewardMode = builder.rewardMode;
+    requestUUID = builder.requestUUID;
+    userProperties = builder.userProperties;
+    surveyReceivedListener = builder.surveyReceivedListener;
+    surveyCompletedListener = builder.surveyCompletedListener;
+    surveyNotAvailableListener = builder.surveyNotAvailableListener;
+    userNotEligibleListener = builder.userNotEligibleListener;
+    openedListener = builder.openedListener;
+    closedListener = builder.closedListener;
+  }
+
+  public static class Builder
+  {
+    private final String apiKey;
+    private Position indicatorPosition = Position.TOP_LEFT;
+    private int indicatorPadding = 0;
+    private boolean releaseMode = false;
+    private boolean offerwallMode = false;
+    private boolean rewardMode = false;
+    private String requestUUID = null;
+    private UserProperties userProperties = null;
+    private PollfishSurveyReceivedListener surveyReceivedListener = null;
+    private PollfishSurveyCompletedListener surveyCompletedListener = null;
+    private PollfishSurveyNotAvailableListener surveyNotAvailableListener = null;
+    private PollfishUserNotEligibleListener userNotEligibleListener = null;
+    private PollfishOpenedListener openedListener = null;
+    private PollfishClosedListener closedListener = null;
+
+    public Builder(String apiKey)
+    {
+      this.apiKey = apiKey;
+    }
+
+    public Builder indicatorPosition(Position position)
+    {
+      indicatorPosition = position;
+      return this;
+    }
+
+    public Builder indicatorPadding(int padding)
+    {
+      indicatorPadding = padding;
+      return this;
+    }
+
+    public Builder releaseMode(boolean releaseMode)
+    {
+      this.releaseMode = releaseMode;
+      return this;
+    }
+
+    public Builder offerwallMode(boolean offerwallMode)
+    {
+      this.offerwallMode = offerwallMode;
+      return this;
+    }
+
+    public Builder rewardMode(boolean rewardMode)
+    {
+      this.rewardMode = rewardMode;
+      return this;
+    }
+
+    public Builder requestUUID(String requestUUID)
+    {
+      this.requestUUID = requestUUID;
+      return this;
+    }
+
+    public Builder userProperties(UserProperties userProperties)
+    {
+      this.userProperties = userProperties;
+      return this;
+    }
+
+    public Builder pollfishSurveyReceivedListener(PollfishSurveyReceivedListener listener)
+    {
+      surveyReceivedListener = listener;
+      return this;
+    }
+
+    public Builder pollfishSurveyCompletedListener(PollfishSurveyCompletedListener listener)
+    {
+      surveyCompletedListener = listener;
+      return this;
+    }
+
+    public Builder pollfishSurveyNotAvailableListener(PollfishSurveyNotAvailableListener listener)
+    {
+      surveyNotAvailableListener = listener;
+      return this;
+    }
+
+    public Builder pollfishUserNotEligibleListener(PollfishUserNotEligibleListener listener)
+    {
+      userNotEligibleListener = listener;
+      return this;
+    }
+
+    public Builder pollfishOpenedListener(PollfishOpenedListener listener)
+    {
+      openedListener = listener;
+      return this;
+    }
+
+    public Builder pollfishClosedListener(PollfishClosedListener listener)
+    {
+      closedListener = listener;
+      return this;
+    }
+
+    public Params build()
+    {
+      return new Params(this);
+    }
+  }
+}
@@ -0,0 +1,21 @@
+//
+// Position.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.pollfish.builder;
+
+// JVM stand-in for the SDK enum
+public enum Position
+{
+  TOP_LEFT,
+  TOP_RIGHT,
+  MIDDLE_LEFT,
+  MIDDLE_RIGHT,
+  BOTTOM_LEFT,
+  BOTTOM_RIGHT
+}
@@ -0,0 +1,44 @@
+//
+// UserProperties.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.pollfish.builder;
+
+// JVM stand-in, only the gender is kept
+public class UserProperties
+{
+  public enum Gender
+  {
+    MALE,
+    FEMALE,
+    OTHER
+  }
+
+  public final Gender gender;
+
+  private UserProperties(Builder builder)
+  {
+    gender = builder.gender;
+  }
+
+  public static class Builder
+  {
+    private Gender gender = null;
+
+    public Builder gender(Gender gender)
+    {
+      this.gender = gender;
+      return this;
+    }
+
+    public UserProperties build()
+    {
+      return new UserProperties(this);
+    }
+  }
+}
@@ -0,0 +1,16 @@
+//
+// PollfishUserNotEligibleListener.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.pollfish.callback;
+
+// JVM stand-in for the SDK callback
+public interface PollfishUserNotEligibleListener
+{
+  void onUserNotEligible();
+}
@@ -0,0 +1,69 @@
+//
+// SurveyInfo.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package com.pollfish.callback;
+
+// JVM stand-in for the survey details reported by the SDK
+public class SurveyInfo
+{
+  private final Integer surveyCPA;
+  private final Integer surveyIR;
+  private final Integer surveyLOI;
+  private final String surveyClass;
+  private final String rewardName;
+  private final Integer rewardValue;
+  private final Integer remainingCompletes;
+
+  public SurveyInfo(Integer surveyCPA, Integer surveyIR, Integer surveyLOI, String surveyClass, String rewardName,
+    Integer rewardValue, Integer remainingCompletes)
+  {
+    this.surveyCPA = surveyCPA;
+    this.surveyIR = surveyIR;
+    this.surveyLOI = surveyLOI;
+    this.surveyClass = surveyClass;
+    this.rewardName = rewardName;
+    this.rewardValue = rewardValue;
+    this.remainingCompletes = remainingCompletes;
+  }
+
+  public Integer getSurveyCPA()
+  {
+    return surveyCPA;
+  }
+
+  public Integer getSurveyIR()
+  {
+    return surveyIR;
+  }
+
+  public Integer getSurveyLOI()
+  {
+    return surveyLOI;
+  }
+
+  public String getSurveyClass()
+  {
+    return surveyClass;
+  }
+
+  public String getRewardName()
+  {
+    return rewardName;
+  }
+
+  public Integer getRewardValue()
+  {
+    return rewardValue;
+  }
+
+  public Integer getRemainingCompletes()
+  {
+    return remainingCompletes;
+  }
+}
@@ -0,0 +1,260 @@
+//
+// FakePollfishGateway.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import android.app.Activity;
+
+import com.pollfish.builder.Params;
+import com.pollfish.callback.SurveyInfo;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process stand-in for the Pollfish SDK, installed with {@link LuaLoader#setGateway}.
+ * <p/>
+ * Requests are answered from a pool of callback threads after the configured delay: initWith()
+ * is answered with received, notEligible or notAvailable according to the configured
+ * probabilities, show() with opened, then completed (with the completion probability) and
+ * closed. {@link #fire} and {@link #fireRandom} call a listener on the calling thread instead,
+ * so a harness can drive callbacks from as many threads as it likes. Every callback made is
+ * counted per type.
+ */
+final class FakePollfishGateway implements PollfishGateway
+{
+  enum Callback
+  {
+    RECEIVED,
+    COMPLETED,
+    NOT_AVAILABLE,
+    NOT_ELIGIBLE,
+    OPENED,
+    CLOSED
+  }
+
+  private static final Callback[] CALLBACKS = Callback.values();
+
+  private final ScheduledExecutorService callbackThreads;
+  private final LongAdder[] fired = new LongAdder[CALLBACKS.length];
+  private final SurveyInfo surveyInfo = new SurveyInfo(120, 40, 8, "Pollfish/Basic", "Coins", 200, 1000);
+
+  private volatile Params params = null;
+  private volatile boolean isShutdown = false;
+  private volatile boolean isPresent = false;
+  private volatile boolean isAnswering = true;
+  private volatile long delayMs = 0;
+  private volatile double receivedProbability = 1;
+  private volatile double notEligibleProbability = 0;   // the rest is notAvailable
+  private volatile double completedProbability = 1;
+  private volatile double[] weights = { 1, 1, 1, 1, 1, 1 };   // fireRandom(), indexed by Callback
+
+  FakePollfishGateway(int callbackThreadCount)
+  {
+    final AtomicInteger threadCount = new AtomicInteger();
+    callbackThreads = Executors.newScheduledThreadPool(callbackThreadCount, runnable -> {
+      Thread thread = new Thread(runnable, "fake-pollfish-" + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    });
+
+    for (int i = 0; i < fired.length; i++) {
+      fired[i] = new LongAdder();
+    }
+  }
+
+  // delay before a request is answered
+  FakePollfishGateway delay(long delayMs)
+  {
+    this.delayMs = delayMs;
+    return this;
+  }
+
+  // leave requests unanswered, callbacks only come from fire() (for tests that script them)
+  FakePollfishGateway silent()
+  {
+    isAnswering = false;
+    return this;
+  }
+
+  // how initWith() is answered, the rest of the requests get notAvailable
+  FakePollfishGateway responses(double receivedProbability, double notEligibleProbability)
+  {
+    if ((receivedProbability < 0) || (notEligibleProbability < 0) || (receivedProbability + notEligibleProbability > 1)) {
+      throw new IllegalArgumentException("probabilities must be between 0 and 1 and add up to at most 1");
+    }
+
+    this.receivedProbability = receivedProbability;
+    this.notEligibleProbability = notEligibleProbability;
+    return this;
+  }
+
+  // how often a shown survey is completed before it is closed
+  FakePollfishGateway completions(double completedProbability)
+  {
+    if ((completedProbability < 0) || (completedProbability > 1)) {
+      throw new IllegalArgumentException("probability must be between 0 and 1");
+    }
+
+    this.completedProbability = completedProbability;
+    return this;
+  }
+
+  // relative weights of the callbacks picked by fireRandom(), in Callback order
+  FakePollfishGateway weights(double... weights)
+  {
+    if (weights.length != CALLBACKS.length) {
+      throw new IllegalArgumentException(CALLBACKS.length + " weights expected, got " + weights.length);
+    }
+
+    this.weights = weights.clone();
+    return this;
+  }
+
+  @Override
+  public void initWith(Activity activity, Params params)
+  {
+    this.params = params;
+    if (! isAnswering) {
+      return;
+    }
+
+    callbackThreads.schedule(() -> {
+      double roll = ThreadLocalRandom.current().nextDouble();
+      if (roll < receivedProbability) {
+        fire(Callback.RECEIVED);
+      }
+      else if (roll < receivedProbability + notEligibleProbability) {
+        fire(Callback.NOT_ELIGIBLE);
+      }
+      else {
+        fire(Callback.NOT_AVAILABLE);
+      }
+    }, delayMs, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public void show()
+  {
+    if (! isPresent || ! isAnswering) {
+      return;
+    }
+
+    callbackThreads.schedule(() -> {
+      fire(Callback.OPENED);
+      if (ThreadLocalRandom.current().nextDouble() < completedProbability) {
+        fire(Callback.COMPLETED);
+      }
+      fire(Callback.CLOSED);
+    }, delayMs, TimeUnit.MILLISECONDS);
+  }
+
+  // the SDK reports closed when the indicator is hidden as well
+  @Override
+  public void hide()
+  {
+    if (! isAnswering) {
+      return;
+    }
+    callbackThreads.schedule(() -> fire(Callback.CLOSED), delayMs, TimeUnit.MILLISECONDS);
+  }
+
+  @Override
+  public boolean isPollfishPresent()
+  {
+    return isPresent;
+  }
+
+  // call the listener for the callback on this thread, returns false before initWith() and after shutdown()
+  boolean fire(Callback callback)
+  {
+    final Params current = params;
+    if ((current == null) || isShutdown) {
+      return false;
+    }
+
+    switch (callback) {
+      case RECEIVED:
+        isPresent = true;
+        current.surveyReceivedListener.onPollfishSurveyReceived(surveyInfo);
+        break;
+      case COMPLETED:
+        isPresent = false;
+        current.surveyCompletedListener.onPollfishSurveyCompleted(surveyInfo);
+        break;
+      case NOT_AVAILABLE:
+        isPresent = false;
+        current.surveyNotAvailableListener.onPollfishSurveyNotAvailable();
+        break;
+      case NOT_ELIGIBLE:
+        isPresent = false;
+        current.userNotEligibleListener.onUserNotEligible();
+        break;
+      case OPENED:
+        current.openedListener.onPollfishOpened();
+        break;
+      case CLOSED:
+        current.closedListener.onPollfishClosed();
+        break;
+    }
+
+    fired[callback.ordinal()].increment();
+    return true;
+  }
+
+  // fire a callback picked with the configured weights on this thread, returns null if none was fired
+  Callback fireRandom()
+  {
+    final double[] current = weights;
+
+    double total = 0;
+    for (double weight : current) {
+      total += weight;
+    }
+
+    double roll = ThreadLocalRandom.current().nextDouble() * total;
+    Callback callback = CALLBACKS[CALLBACKS.length - 1];
+    for (int i = 0; i < current.length; i++) {
+      roll -= current[i];
+      if (roll < 0) {
+        callback = CALLBACKS[i];
+        break;
+      }
+    }
+
+    return fire(callback) ? callback : null;
+  }
+
+  long getFiredCount(Callback callback)
+  {
+    return fired[callback.ordinal()].sum();
+  }
+
+  long getFiredCount()
+  {
+    long total = 0;
+    for (LongAdder count : fired) {
+      total += count.sum();
+    }
+    return total;
+  }
+
+  // stop answering and firing, pending answers are dropped
+  // returns once no callback is running on the callback threads
+  void shutdown() throws InterruptedException
+  {
+    isShutdown = true;
+    callbackThreads.shutdownNow();
+    callbackThreads.awaitTermination(10, TimeUnit.SECONDS);
+  }
+}
@@ -0,0 +1,184 @@
+//
+// PluginHarness.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import android.content.Context;
+
+import com.naef.jnlua.JavaFunction;
+import com.naef.jnlua.LuaState;
+
+import com.ansca.corona.CoronaActivity;
+import com.ansca.corona.CoronaEnvironment;
+import com.ansca.corona.CoronaRuntime;
+import com.pollfish.Pollfish;
+import com.pollfish.builder.Params;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Runs the plugin on a plain JVM, against the in-memory Lua state and the Corona stand-ins.
+ * <p/>
+ * The harness plays the part of the Corona runtime: it requires the plugin, calls its Lua
+ * functions, delivers the runtime events and runs the tasks the plugin sends back. The Lua
+ * listener only counts the events it receives. SDK calls go to the Pollfish stand-in, or to a
+ * gateway such as {@link FakePollfishGateway} that answers them itself. LuaLoader keeps its state
+ * in statics, so only one harness may be open at a time and it must be closed before the next one
+ * is created.
+ */
+final class PluginHarness
+{
+  static final String LIBRARY = LuaLoader.PLUGIN_NAME;
+
+  final LuaState L = new LuaState();
+  final CoronaRuntime runtime = new CoronaRuntime(L);
+  final CoronaActivity activity = new CoronaActivity();
+  final LuaLoader loader;
+
+  private long eventCount = 0;
+
+  // counts the events, like a Lua listener that does nothing with them
+  private final JavaFunction listener = luaState -> {
+    eventCount++;
+    return 0;
+  };
+
+  // the plugin calls the Pollfish stand-in
+  PluginHarness()
+  {
+    this(null);
+  }
+
+  // the plugin calls the given gateway instead of the Pollfish stand-in
+  PluginHarness(PollfishGateway gateway)
+  {
+    LuaLoader.setGateway(gateway);
+
+    CoronaEnvironment.setApplicationContext(new Context());
+    CoronaEnvironment.setCoronaActivity(activity);
+
+    loader = new LuaLoader();
+
+    // require("plugin.pollfish")
+    L.pushString(LIBRARY);
+    loader.invoke(L);
+    L.setTop(0);
+
+    loader.onLoaded(runtime);
+  }
+
+  // pollfish.init(listener, options), the options are alternating keys and values
+  // returns once the rewards of the reward journal, if enabled, have been replayed
+  PluginHarness init(Object... options)
+  {
+    L.call(LIBRARY, "init", listener, table(options));
+    runPendingTasks();
+
+    // the reward journal is read on the journal thread, then its rewards are replayed on the plugin thread
+    LuaLoader.awaitJournalThread();
+    runPendingTasks();
+    return this;
+  }
+
+  // pollfish.load(options), the options are alternating keys and values
+  PluginHarness load(Object... options)
+  {
+    L.call(LIBRARY, "load", table(options));
+    runPendingTasks();
+    return this;
+  }
+
+  // call any plugin function, the results are left on the stack
+  int call(String function, Object... args)
+  {
+    return L.call(LIBRARY, function, args);
+  }
+
+  // the params of the last Pollfish.initWith(), with the listeners the SDK would call
+  Params params()
+  {
+    return Pollfish.getLastParams();
+  }
+
+  // deliver the events sent to the runtime, returns how many were run
+  // SDK callbacks handed to the plugin thread before this call are included
+  int runPendingTasks()
+  {
+    awaitPluginThread();
+    return runtime.runPendingTasks();
+  }
+
+  // wait until the plugin thread has run everything handed to it so far
+  void awaitPluginThread()
+  {
+    LuaLoader.runOnPluginThread(() -> { });
+  }
+
+  // pollEvents(), returns the events collected, oldest first
+  List<LuaState.Table> pollEvents()
+  {
+    awaitPluginThread();
+    call("pollEvents");
+    LuaState.Table events = (LuaState.Table)L.get(1);
+    L.setTop(0);
+
+    List<LuaState.Table> list = new ArrayList<>();
+    for (int i = 1; i <= events.length(); i++) {
+      list.add((LuaState.Table)events.get(i));
+    }
+    return list;
+  }
+
+  // pollEvents(), returns the phases of the events collected, oldest first
+  List<String> pollPhases()
+  {
+    List<String> phases = new ArrayList<>();
+    for (LuaState.Table event : pollEvents()) {
+      phases.add((String)event.get("phase"));
+    }
+    return phases;
+  }
+
+  // the runtime is suspended, as when the app goes to the background
+  void suspend()
+  {
+    loader.onSuspended(runtime);
+  }
+
+  // the runtime is resumed, the events held while suspended are sent as one task
+  void resume()
+  {
+    loader.onResumed(runtime);
+  }
+
+  long getEventCount()
+  {
+    return eventCount;
+  }
+
+  // the runtime is exiting, this resets the plugin
+  void close()
+  {
+    runPendingTasks();
+    loader.onExiting(runtime);
+    CoronaEnvironment.removeRuntimeListener(loader);
+    LuaLoader.setGateway(null);
+  }
+
+  // a Lua table built from alternating keys and values
+  static LuaState.Table table(Object... keysAndValues)
+  {
+    LuaState.Table table = new LuaState.Table();
+    for (int i = 0; i + 1 < keysAndValues.length; i += 2) {
+      table.set(keysAndValues[i], keysAndValues[i + 1]);
+    }
+    return table;
+  }
+}
@@ -0,0 +1,317 @@
+//
+// PollfishSoak.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import com.naef.jnlua.LuaState;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Soak test: drives millions of SDK callbacks through the plugin and checks that every event
+ * is accounted for.
+ * <p/>
+ * Producer threads fire weighted random callbacks through a {@link FakePollfishGateway}, while
+ * the main thread plays the Corona runtime: it delivers the events (or collects them with
+ * pollEvents()) and calls load() and show() at a fixed interval, which the fake answers from its
+ * own threads. At the end the report gives the callback and event throughput, the peak runtime
+ * backlog, the heap retained after a full GC and the events dropped or lost. The runtime can
+ * also be suspended for a while and resumed for a while, over and over. Every event numbered by
+ * the plugin must be either delivered or reported as dropped or coalesced, and no more than the
+ * given share of them may be dropped or coalesced, otherwise the run fails with exit status 1.
+ * The producers are not throttled, so a run with pollEvents (a queue of 64 events) or with the
+ * runtime suspended drops or coalesces most events by design: give it a maxDropRatio that fits.
+ * <p/>
+ * Run with ./gradlew -Pbenchmarks :benchmarks:soak, options are given as -Psoak.name=value,
+ * see {@link #DEFAULTS}.
+ */
+final class PollfishSoak
+{
+  // options and their default values
+  private static final String[][] DEFAULTS = {
+    { "callbacks",    "5000000" },  // callbacks fired by the producers, in total
+    { "threads",      "4" },        // producer threads
+    { "dataFormat",   "json" },     // init option dataFormat
+    { "pollEvents",   "false" },    // collect events with pollEvents() instead of the listener
+    { "delay",        "5" },        // ms before the fake answers load() and show()
+    { "loadInterval", "100" },      // ms between the load() and show() calls of the runtime thread
+    { "suspend",      "0" },        // ms the runtime stays suspended each time, 0 to never suspend
+    { "resume",       "1000" },     // ms the runtime runs between suspensions
+    { "maxDropRatio", "0.01" },     // share of the events that may be dropped or coalesced
+    { "timeout",      "600" },      // seconds before the run is abandoned
+  };
+
+  private static final long MB = 1024 * 1024;
+
+  private PollfishSoak()
+  {
+  }
+
+  public static void main(String[] args) throws InterruptedException
+  {
+    Map<String, String> options = parse(args);
+
+    final long callbacks = Long.parseLong(options.get("callbacks"));
+    final int threads = Integer.parseInt(options.get("threads"));
+    final String dataFormat = options.get("dataFormat");
+    final boolean pollEvents = Boolean.parseBoolean(options.get("pollEvents"));
+    final long delayMs = Long.parseLong(options.get("delay"));
+    final long loadIntervalMs = Long.parseLong(options.get("loadInterval"));
+    final long suspendMs = Long.parseLong(options.get("suspend"));
+    final long resumeMs = Long.parseLong(options.get("resume"));
+    final double maxDropRatio = Double.parseDouble(options.get("maxDropRatio"));
+    final long timeoutNs = TimeUnit.SECONDS.toNanos(Long.parseLong(options.get("timeout")));
+
+    final FakePollfishGateway fake = new FakePollfishGateway(2)
+      .delay(delayMs)
+      .responses(0.8, 0.1)
+      .completions(0.7)
+      .weights(4, 1, 1, 1, 2, 2);
+
+    final PluginHarness harness = new PluginHarness(fake)
+      .init("apiKey", "soak", "dataFormat", dataFormat, "pollEvents", pollEvents)
+      .load();
+
+    System.out.println("pollfish soak: " + options);
+
+    // the producers fire nothing until the fake has its params
+    final long eventsBefore = awaitFirstCallback(fake, harness, pollEvents);
+    final long discardedBefore = getDiscardedCount(harness);
+    if (eventsBefore < 0) {
+      System.out.println("FAILED: no answer to load() from the fake gateway");
+      System.exit(1);
+    }
+
+    final long baselineHeap = usedHeapAfterGC();
+
+    // producers
+    final long perThread = callbacks / threads;
+    Thread[] producers = new Thread[threads];
+    for (int i = 0; i < threads; i++) {
+      producers[i] = new Thread(() -> {
+        for (long n = 0; n < perThread; n++) {
+          fake.fireRandom();
+        }
+      }, "soak-producer-" + (i + 1));
+    }
+
+    final long firedBefore = fake.getFiredCount();
+    final long startNs = System.nanoTime();
+    for (Thread producer : producers) {
+      producer.start();
+    }
+
+    // runtime thread
+    long delivered = 0;
+    long dropped = 0;
+    long peakBacklog = 0;
+    long peakHeap = 0;
+    long nextLoadNs = startNs;
+    long nextSuspendNs = startNs + TimeUnit.MILLISECONDS.toNanos(resumeMs);
+    boolean isSuspended = false;
+    long suspendCount = 0;
+    long suspendedAtNs = 0;
+    long suspendedNs = 0;                     // in total, resume() waits for the plugin thread
+    boolean isTimedOut = false;
+
+    while (isAnyAlive(producers)) {
+      long now = System.nanoTime();
+      if (now - startNs > timeoutNs) {
+        isTimedOut = true;
+        break;
+      }
+
+      if (now >= nextLoadNs) {
+        harness.call("load");
+        harness.call("show");
+        nextLoadNs = now + TimeUnit.MILLISECONDS.toNanos(loadIntervalMs);
+
+        peakHeap = Math.max(peakHeap, usedHeap());
+      }
+
+      if ((suspendMs > 0) && (now >= nextSuspendNs)) {
+        if (isSuspended) {
+          harness.resume();
+          suspendedNs += System.nanoTime() - suspendedAtNs;
+          nextSuspendNs = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(resumeMs);
+        }
+        else {
+          harness.suspend();
+          suspendCount++;
+          suspendedAtNs = System.nanoTime();
+          nextSuspendNs = suspendedAtNs + TimeUnit.MILLISECONDS.toNanos(suspendMs);
+        }
+        isSuspended = ! isSuspended;
+      }
+
+      peakBacklog = Math.max(peakBacklog, harness.runtime.getPendingTaskCount());
+
+      long[] counts = deliver(harness, pollEvents);
+      delivered += counts[0];
+      dropped += counts[1];
+    }
+
+    final long elapsedNs = System.nanoTime() - startNs;
+
+    // the producers stop as soon as the fake does
+    fake.shutdown();
+    for (Thread producer : producers) {
+      producer.join();
+    }
+
+    // deliver what is left
+    if (isSuspended) {
+      harness.resume();
+      suspendedNs += System.nanoTime() - suspendedAtNs;
+    }
+    harness.awaitPluginThread();
+    long[] counts = deliver(harness, pollEvents);
+    delivered += counts[0];
+    dropped += counts[1];
+
+    final long fired = fake.getFiredCount() - firedBefore;
+    final long numbered = getEventCount(harness) - eventsBefore;
+    final long discarded = getDiscardedCount(harness) - discardedBefore;
+    final long retainedHeap = usedHeapAfterGC() - baselineHeap;
+
+    harness.close();
+    final long closedHeap = usedHeapAfterGC() - baselineHeap;
+
+    final long lost = numbered - delivered - dropped - discarded;
+    final double dropRatio = (numbered > 0) ? (double)(dropped + discarded) / numbered : 0;
+    final double seconds = elapsedNs / 1e9;
+
+    System.out.println();
+    System.out.printf("duration          %.1f s%n", seconds);
+    for (FakePollfishGateway.Callback callback : FakePollfishGateway.Callback.values()) {
+      System.out.printf("  %-15s %d%n", callback.name().toLowerCase(), fake.getFiredCount(callback));
+    }
+    System.out.printf("callbacks         %d (%.0f/s)%n", fired, fired / seconds);
+    System.out.printf("events            %d (%.0f/s)%n", numbered, numbered / seconds);
+    System.out.printf("delivered         %d%n", delivered);
+    System.out.printf("dropped           %d%n", dropped);
+    System.out.printf("suspended         %d times for %.1f s, %d events coalesced or dropped%n", suspendCount, suspendedNs / 1e9, discarded);
+    System.out.printf("lost              %d%n", lost);
+    System.out.printf("drop ratio        %.4f (max %.4f)%n", dropRatio, maxDropRatio);
+    System.out.printf("peak backlog      %d tasks%n", peakBacklog);
+    System.out.printf("peak heap         %d MB%n", peakHeap / MB);
+    System.out.printf("retained heap     %d KB (after close: %d KB)%n", retainedHeap / 1024, closedHeap / 1024);
+
+    if (isTimedOut) {
+      System.out.println("FAILED: timed out");
+      System.exit(1);
+    }
+    if (lost != 0) {
+      System.out.println("FAILED: events lost");
+      System.exit(1);
+    }
+    if (dropRatio > maxDropRatio) {
+      System.out.println("FAILED: too many events dropped or coalesced");
+      System.exit(1);
+    }
+    System.out.println("OK");
+  }
+
+  // -------------------------------------------------------------------
+  // helpers
+  // -------------------------------------------------------------------
+
+  private static Map<String, String> parse(String[] args)
+  {
+    Map<String, String> options = new LinkedHashMap<>();
+    for (String[] option : DEFAULTS) {
+      options.put(option[0], option[1]);
+    }
+
+    for (String arg : args) {
+      int separator = arg.indexOf('=');
+      String name = (separator < 0) ? arg : arg.substring(arg.startsWith("--") ? 2 : 0, separator);
+      if ((separator < 0) || ! options.containsKey(name)) {
+        throw new IllegalArgumentException("unknown option: " + arg + ", expected one of " + options.keySet());
+      }
+      options.put(name, arg.substring(separator + 1));
+    }
+
+    return options;
+  }
+
+  // deliver the pending events, returns { delivered, dropped }
+  // like the runtime, this does not wait for the plugin thread, so the loop keeps its timing
+  private static long[] deliver(PluginHarness harness, boolean pollEvents)
+  {
+    if (! pollEvents) {
+      long before = harness.getEventCount();
+      harness.runtime.runPendingTasks();
+      return new long[] { harness.getEventCount() - before, 0 };
+    }
+
+    harness.call("pollEvents");
+    LuaState.Table events = (LuaState.Table)harness.L.get(1);
+    return new long[] { events.length(), (long)harness.L.toNumber(2) };
+  }
+
+  // the number of events the plugin has numbered so far (stats.events)
+  private static long getEventCount(PluginHarness harness)
+  {
+    harness.call("getStats");
+    return ((Double)((LuaState.Table)harness.L.get(1)).get("events")).longValue();
+  }
+
+  // the events coalesced or dropped while the runtime was suspended (stats.counters)
+  private static long getDiscardedCount(PluginHarness harness)
+  {
+    harness.call("getStats");
+    LuaState.Table counters = (LuaState.Table)((LuaState.Table)harness.L.get(1)).get("counters");
+    return ((Double)counters.get("eventsCoalesced")).longValue() + ((Double)counters.get("eventsDropped")).longValue();
+  }
+
+  // wait for the answer to the initial load() and deliver it, returns the events numbered so far
+  // or -1 if there was no answer
+  private static long awaitFirstCallback(FakePollfishGateway fake, PluginHarness harness, boolean pollEvents)
+    throws InterruptedException
+  {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (fake.getFiredCount() == 0) {
+      if (System.nanoTime() > deadline) {
+        return -1;
+      }
+      Thread.sleep(1);
+    }
+
+    deliver(harness, pollEvents);
+    return getEventCount(harness);
+  }
+
+  private static boolean isAnyAlive(Thread[] threads)
+  {
+    for (Thread thread : threads) {
+      if (thread.isAlive()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static long usedHeap()
+  {
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private static long usedHeapAfterGC() throws InterruptedException
+  {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(100);
+    }
+    return usedHeap();
+  }
+}
@@ -0,0 +1,76 @@
+//
+// ClosedEventTest.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * The SDK reports closed when only the indicator is hidden as well, and may report it more than
+ * once: a "closed" event is only sent once for each survey that was opened.
+ */
+public class ClosedEventTest extends PluginTestCase
+{
+  @Before
+  public void setUp()
+  {
+    start().load();
+    harness.pollPhases();
+  }
+
+  @Test
+  public void failedBeforeDisplayIsNotClosed()
+  {
+    fire(FakePollfishGateway.Callback.NOT_AVAILABLE, FakePollfishGateway.Callback.CLOSED);
+
+    assertEquals(Arrays.asList("failed"), harness.pollPhases());
+  }
+
+  @Test
+  public void repeatedClosedIsSentOnce()
+  {
+    fire(FakePollfishGateway.Callback.RECEIVED, FakePollfishGateway.Callback.OPENED,
+      FakePollfishGateway.Callback.CLOSED, FakePollfishGateway.Callback.CLOSED);
+
+    assertEquals(Arrays.asList("loaded", "displayed", "closed"), harness.pollPhases());
+  }
+
+  @Test
+  public void completedThenClosedIsSentOnce()
+  {
+    fire(FakePollfishGateway.Callback.RECEIVED, FakePollfishGateway.Callback.OPENED,
+      FakePollfishGateway.Callback.COMPLETED, FakePollfishGateway.Callback.CLOSED,
+      FakePollfishGateway.Callback.CLOSED);
+
+    assertEquals(Arrays.asList("loaded", "displayed", "completed", "closed"), harness.pollPhases());
+  }
+
+  @Test
+  public void screenedOutWhileDisplayedIsClosed()
+  {
+    fire(FakePollfishGateway.Callback.RECEIVED, FakePollfishGateway.Callback.OPENED,
+      FakePollfishGateway.Callback.NOT_ELIGIBLE, FakePollfishGateway.Callback.CLOSED);
+
+    assertEquals(Arrays.asList("loaded", "displayed", "failed", "closed"), harness.pollPhases());
+  }
+
+  // fire the callbacks in order and wait until the plugin has handled them
+  private void fire(FakePollfishGateway.Callback... callbacks)
+  {
+    for (FakePollfishGateway.Callback callback : callbacks) {
+      fake.fire(callback);
+    }
+    harness.awaitPluginThread();
+  }
+}
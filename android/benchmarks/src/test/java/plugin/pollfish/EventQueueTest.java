@@ -0,0 +1,97 @@
+//
+// EventQueueTest.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A full queue rejects new events and counts them as dropped, keeping the ones already queued.
+ */
+public class EventQueueTest
+{
+  @Test
+  public void capacityIsRoundedUpToPowerOfTwo()
+  {
+    assertEquals(2, new EventQueue(1).capacity());
+    assertEquals(4, new EventQueue(3).capacity());
+    assertEquals(4, new EventQueue(4).capacity());
+    assertEquals(64, new EventQueue(50).capacity());
+  }
+
+  @Test
+  public void eventsArePolledOldestFirst()
+  {
+    EventQueue queue = new EventQueue(4);
+    List<PollfishEvent> events = obtain(3);
+    for (PollfishEvent event : events) {
+      assertTrue(queue.offer(event));
+    }
+
+    assertEquals(3, queue.size());
+    for (PollfishEvent event : events) {
+      assertTrue(queue.poll() == event);
+    }
+    assertNull(queue.poll());
+    assertEquals(0, queue.size());
+  }
+
+  @Test
+  public void fullQueueDropsNewEvents()
+  {
+    EventQueue queue = new EventQueue(4);
+    List<PollfishEvent> events = obtain(6);
+    for (int i = 0; i < 4; i++) {
+      assertTrue(queue.offer(events.get(i)));
+    }
+
+    assertFalse(queue.offer(events.get(4)));
+    assertFalse(queue.offer(events.get(5)));
+    assertEquals(4, queue.size());
+    assertEquals(2, queue.takeDroppedCount());
+
+    // the count starts over once taken
+    assertEquals(0, queue.takeDroppedCount());
+
+    // the queued events are kept, oldest first
+    for (int i = 0; i < 4; i++) {
+      assertTrue(queue.poll() == events.get(i));
+    }
+  }
+
+  @Test
+  public void polledSlotsAreReused()
+  {
+    EventQueue queue = new EventQueue(2);
+    List<PollfishEvent> events = obtain(5);
+
+    for (PollfishEvent event : events) {
+      assertTrue(queue.offer(event));
+      assertTrue(queue.poll() == event);
+    }
+    assertEquals(0, queue.takeDroppedCount());
+  }
+
+  private static List<PollfishEvent> obtain(int count)
+  {
+    List<PollfishEvent> events = new ArrayList<>();
+    for (int i = 0; i < count; i++) {
+      events.add(PollfishEvent.obtain("loaded"));
+    }
+    return events;
+  }
+}
@@ -0,0 +1,159 @@
+//
+// LuaOptionsTest.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.naef.jnlua.LuaState;
+
+import org.junit.Test;
+
+/**
+ * Decoding of an options table: defaults for the options not given, decoded values, and the
+ * error reported for an invalid key, type or value (with the stack left as it was).
+ */
+public class LuaOptionsTest
+{
+  private enum Color
+  {
+    RED,
+    GREEN,
+    BLUE
+  }
+
+  private static final LuaOptions.Builder builder = LuaOptions.builder();
+  private static final LuaOptions.Option NAME = builder.string("name");
+  private static final LuaOptions.Option SIZE = builder.number("size", 4);
+  private static final LuaOptions.Option ENABLED = builder.bool("enabled", true);
+  private static final LuaOptions.Option COLOR = builder.choice("color", Color.class, Color.GREEN);
+  private static final LuaOptions.Option COLORS = builder.set("colors", Color.class, 0);
+  private static final LuaOptions.Option NESTED = builder.table("nested");
+  private static final LuaOptions.Option NESTED_DEPTH = builder.in(NESTED).number("depth", 1);
+  private static final LuaOptions.Option SHADE = builder.choice("shade", Color.class, null);
+  static {
+    builder.label(SHADE, "options.tint");
+    builder.ignore("legacy");
+  }
+  private static final LuaOptions SCHEMA = builder.build();
+
+  private String error;
+
+  @Test
+  public void defaultsWhenNotGiven()
+  {
+    LuaOptions.Values values = decode(PluginHarness.table());
+
+    assertNotNull(values);
+    assertFalse(values.has(NAME));
+    assertNull(values.getString(NAME));
+    assertEquals(4, (long)values.getNumber(SIZE));
+    assertTrue(values.getBoolean(ENABLED));
+    assertEquals(Color.GREEN, values.getChoice(COLOR));
+    assertNull(values.getChoice(SHADE));
+    assertEquals(0, values.getSet(COLORS));
+    assertEquals(1, (long)values.getNumber(NESTED_DEPTH));
+
+    // a call without a table gets the same shared defaults
+    assertTrue(SCHEMA.defaults() == SCHEMA.defaults());
+    assertEquals(Color.GREEN, SCHEMA.defaults().getChoice(COLOR));
+  }
+
+  @Test
+  public void givenValuesAreDecoded()
+  {
+    LuaOptions.Values values = decode(PluginHarness.table(
+      "name", "plugin", "size", 8.0, "enabled", false, "color", "blue", "legacy", 1.0,
+      "colors", PluginHarness.table(1.0, "red", 2.0, "blue"),
+      "nested", PluginHarness.table("depth", 3.0)));
+
+    assertNotNull(values);
+    assertTrue(values.has(NAME));
+    assertEquals("plugin", values.getString(NAME));
+    assertEquals(8, (long)values.getNumber(SIZE));
+    assertFalse(values.getBoolean(ENABLED));
+    assertEquals(Color.BLUE, values.getChoice(COLOR));
+    assertEquals((1L << Color.RED.ordinal()) | (1L << Color.BLUE.ordinal()), values.getSet(COLORS));
+    assertTrue(values.has(NESTED_DEPTH));
+    assertEquals(3, (long)values.getNumber(NESTED_DEPTH));
+    assertNull(error);
+  }
+
+  @Test
+  public void invalidKeyIsReported()
+  {
+    assertNull(decode(PluginHarness.table("size", 8.0, "bogus", 1.0)));
+    assertEquals("Invalid option 'bogus'", error);
+
+    assertNull(decode(PluginHarness.table(1.0, "x")));
+    assertEquals("Invalid option 'number'", error);
+
+    assertNull(decode(PluginHarness.table("nested", PluginHarness.table("width", 1.0))));
+    assertEquals("options.nested invalid option 'width'", error);
+  }
+
+  @Test
+  public void wrongTypeIsReported()
+  {
+    assertNull(decode(PluginHarness.table("size", "big")));
+    assertEquals("options.size expected (number). Got string", error);
+
+    assertNull(decode(PluginHarness.table("nested", true)));
+    assertEquals("options.nested table expected. Got boolean", error);
+
+    assertNull(decode(PluginHarness.table("colors", PluginHarness.table(1.0, 2.0))));
+    assertEquals("options.colors expected (array of strings). Got number", error);
+  }
+
+  @Test
+  public void invalidValueListsValidValues()
+  {
+    assertNull(decode(PluginHarness.table("color", "pink")));
+    assertEquals("options.color, invalid value 'pink'. Valid values: 'red', 'green', 'blue'", error);
+
+    // a relabelled option is named as labelled
+    assertNull(decode(PluginHarness.table("shade", "pink")));
+    assertEquals("options.tint, invalid value 'pink'. Valid values: 'red', 'green', 'blue'", error);
+  }
+
+  @Test
+  public void notTableIsReported()
+  {
+    LuaState luaState = new LuaState();
+    luaState.pushNumber(1);
+
+    assertNull(SCHEMA.decode(luaState, 1, message -> error = message));
+    assertEquals("options table expected. Got number", error);
+  }
+
+  @Test
+  public void stackIsRestoredOnError()
+  {
+    LuaState luaState = new LuaState();
+    luaState.push(PluginHarness.table("nested", PluginHarness.table("depth", "deep")));
+
+    assertNull(SCHEMA.decode(luaState, 1, message -> error = message));
+    assertEquals("options.nested.depth expected (number). Got string", error);
+    assertEquals(1, luaState.getTop());
+  }
+
+  private LuaOptions.Values decode(LuaState.Table table)
+  {
+    error = null;
+    LuaState luaState = new LuaState();
+    luaState.push(table);
+    LuaOptions.Values values = SCHEMA.decode(luaState, 1, message -> error = message);
+    assertEquals(1, luaState.getTop());
+    return values;
+  }
+}
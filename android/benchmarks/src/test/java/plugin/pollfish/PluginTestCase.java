@@ -0,0 +1,57 @@
+//
+// PluginTestCase.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import org.junit.After;
+
+/**
+ * Shared fixture of the plugin tests: a silent fake SDK that only reports the callbacks a test
+ * fires, and a harness initialized with pollEvents so the events can be checked in order.
+ * Both are shut down after every test.
+ */
+public abstract class PluginTestCase
+{
+  protected FakePollfishGateway fake;
+  protected PluginHarness harness;
+
+  // a new fake SDK and harness, init() called with the test api key, pollEvents and the given options
+  protected PluginHarness start(Object... options)
+  {
+    Object[] initOptions = new Object[options.length + 4];
+    initOptions[0] = "apiKey";
+    initOptions[1] = "test";
+    initOptions[2] = "pollEvents";
+    initOptions[3] = true;
+    System.arraycopy(options, 0, initOptions, 4, options.length);
+
+    fake = new FakePollfishGateway(1).silent();
+    harness = new PluginHarness(fake).init(initOptions);
+    return harness;
+  }
+
+  // shut the harness and the fake SDK down, as when the runtime exits
+  protected void stop() throws InterruptedException
+  {
+    if (harness != null) {
+      harness.close();
+      harness = null;
+    }
+    if (fake != null) {
+      fake.shutdown();
+      fake = null;
+    }
+  }
+
+  @After
+  public void tearDown() throws InterruptedException
+  {
+    stop();
+  }
+}
@@ -0,0 +1,86 @@
+//
+// PrefetchRefreshTest.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import android.os.SystemClock;
+
+import com.naef.jnlua.LuaState;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+/**
+ * A stale survey refreshed in the background stays loaded until the new one arrives, and stays
+ * loaded if the refresh fails.
+ */
+public class PrefetchRefreshTest extends PluginTestCase
+{
+  @Before
+  public void setUp()
+  {
+    start("prefetch", true, "prefetchTTL", 1000).load();
+    fake.fire(FakePollfishGateway.Callback.RECEIVED);
+    harness.pollPhases();
+
+    // the survey goes stale, the scheduler checks again when the runtime is resumed
+    SystemClock.advance(PrefetchScheduler.MIN_REQUEST_INTERVAL_MS);
+    harness.suspend();
+    harness.resume();
+    harness.awaitPluginThread();
+  }
+
+  @Test
+  public void loadedWhileRefreshing()
+  {
+    assertEquals(2, getLoads());
+    assertTrue(isLoaded());
+  }
+
+  @Test
+  public void loadedAfterRefresh()
+  {
+    fake.fire(FakePollfishGateway.Callback.RECEIVED);
+
+    assertEquals(Arrays.asList("loaded"), harness.pollPhases());
+    assertTrue(isLoaded());
+  }
+
+  @Test
+  public void loadedAfterFailedRefresh()
+  {
+    fake.fire(FakePollfishGateway.Callback.NOT_AVAILABLE);
+
+    assertEquals(Arrays.asList(), harness.pollPhases());
+    assertTrue(isLoaded());
+  }
+
+  private boolean isLoaded()
+  {
+    harness.awaitPluginThread();
+    harness.call("isLoaded");
+    boolean isLoaded = (Boolean)harness.L.get(1);
+    harness.L.setTop(0);
+    return isLoaded;
+  }
+
+  // survey requests so far (stats.counters.loads)
+  private long getLoads()
+  {
+    harness.call("getStats");
+    LuaState.Table counters = (LuaState.Table)((LuaState.Table)harness.L.get(1)).get("counters");
+    harness.L.setTop(0);
+    return ((Double)counters.get("loads")).longValue();
+  }
+}
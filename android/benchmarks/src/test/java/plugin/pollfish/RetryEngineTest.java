@@ -0,0 +1,138 @@
+//
+// RetryEngineTest.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Backoff delays, their jitter, and the separate retry budgets of "notAvailable" and "notEligible".
+ */
+public class RetryEngineTest
+{
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+  private final Semaphore retries = new Semaphore(0);
+
+  @After
+  public void tearDown()
+  {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void backoffGrowsUpToMaxDelay()
+  {
+    RetryEngine.Policy policy = new RetryEngine.Policy(1000, 2.0, 0, 10, 5000, 0);
+
+    assertEquals(1000, policy.baseDelayFor(1));
+    assertEquals(2000, policy.baseDelayFor(2));
+    assertEquals(4000, policy.baseDelayFor(3));
+    assertEquals(5000, policy.baseDelayFor(4));
+    assertEquals(5000, policy.baseDelayFor(10));
+  }
+
+  @Test
+  public void jitterStaysWithinSpread()
+  {
+    RetryEngine engine = newEngine(new RetryEngine.Policy(10000, 2.0, 0.2, 5, 60000, 0));
+
+    long min = Long.MAX_VALUE;
+    long max = Long.MIN_VALUE;
+    for (int i = 0; i < 200; i++) {
+      // the retry is not run, every failure is a first attempt again
+      long delay = engine.onFailure(false);
+      min = Math.min(min, delay);
+      max = Math.max(max, delay);
+    }
+    engine.cancel();
+
+    assertTrue("min " + min, min >= 8000);
+    assertTrue("max " + max, max <= 12000);
+    assertTrue("no spread", min < max);
+  }
+
+  @Test
+  public void notEligibleHasNoRetriesByDefault()
+  {
+    RetryEngine engine = newEngine(new RetryEngine.Policy(10000, 2.0, 0, 5, 60000,
+      RetryEngine.DEFAULT_NOT_ELIGIBLE_MAX_ATTEMPTS));
+
+    assertEquals(RetryEngine.NO_RETRY, engine.onFailure(true));
+    assertEquals(10000, engine.onFailure(false));
+    engine.cancel();
+  }
+
+  @Test
+  public void notEligibleBudgetIsSpentSeparately() throws InterruptedException
+  {
+    RetryEngine engine = newEngine(new RetryEngine.Policy(1, 1.0, 0, 3, 1, 1));
+
+    // one retry after "notEligible", the next one is refused
+    assertEquals(1, engine.onFailure(true));
+    awaitRetry();
+    assertEquals(RetryEngine.NO_RETRY, engine.onFailure(true));
+
+    // "notAvailable" still has retries left on the same attempt count
+    assertEquals(1, engine.onFailure(false));
+    awaitRetry();
+    assertEquals(3, engine.getAttempt());
+  }
+
+  @Test
+  public void retriesStopWhenBudgetIsSpent() throws InterruptedException
+  {
+    RetryEngine engine = newEngine(new RetryEngine.Policy(1, 1.0, 0, 2, 1, 0));
+
+    for (int retry = 1; retry <= 2; retry++) {
+      assertEquals(1, engine.onFailure(false));
+      awaitRetry();
+    }
+    assertEquals(RetryEngine.NO_RETRY, engine.onFailure(false));
+
+    // a received survey starts over
+    engine.reset();
+    assertEquals(1, engine.getAttempt());
+    assertEquals(1, engine.onFailure(false));
+    engine.cancel();
+  }
+
+  @Test
+  public void retryDueWhilePausedRunsOnResume() throws InterruptedException
+  {
+    RetryEngine engine = newEngine(new RetryEngine.Policy(1, 1.0, 0, 2, 1, 0));
+
+    engine.pause();
+    engine.onFailure(false);
+    Thread.sleep(50);
+    assertEquals(0, retries.availablePermits());
+
+    engine.resume();
+    awaitRetry();
+    assertEquals(2, engine.getAttempt());
+  }
+
+  private RetryEngine newEngine(RetryEngine.Policy policy)
+  {
+    return new RetryEngine(executor, policy, retries::release);
+  }
+
+  private void awaitRetry() throws InterruptedException
+  {
+    assertTrue("retry not run", retries.tryAcquire(5, TimeUnit.SECONDS));
+  }
+}
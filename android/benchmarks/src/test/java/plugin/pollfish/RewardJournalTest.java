@@ -0,0 +1,66 @@
+//
+// RewardJournalTest.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import static org.junit.Assert.assertEquals;
+
+import android.content.Context;
+
+import com.naef.jnlua.LuaState;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Completed surveys are journaled whenever the outbox is enabled, even while Lua is not
+ * subscribed to "completed" events, and are replayed on the next init().
+ */
+public class RewardJournalTest extends PluginTestCase
+{
+  private final File journal = new File(new Context().getFilesDir(), RewardOutbox.FILE_NAME);
+
+  @Before
+  public void setUp()
+  {
+    journal.delete();
+
+    start("rewardOutbox", true, "subscribe", PluginHarness.table("phases", PluginHarness.table(1.0, "failed"))).load();
+  }
+
+  @After
+  @Override
+  public void tearDown() throws InterruptedException
+  {
+    stop();
+    journal.delete();
+  }
+
+  @Test
+  public void unsubscribedRewardIsReplayed() throws InterruptedException
+  {
+    fake.fire(FakePollfishGateway.Callback.RECEIVED);
+    fake.fire(FakePollfishGateway.Callback.OPENED);
+    fake.fire(FakePollfishGateway.Callback.COMPLETED);
+    assertEquals(0, harness.pollEvents().size());
+
+    // the next run is subscribed to everything
+    stop();
+    start("rewardOutbox", true);
+
+    List<LuaState.Table> events = harness.pollEvents();
+    assertEquals(2, events.size());
+    assertEquals("completed", events.get(1).get("phase"));
+    assertEquals(true, events.get(1).get("isReplay"));
+  }
+}
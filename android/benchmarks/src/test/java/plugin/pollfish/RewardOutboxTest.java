@@ -0,0 +1,185 @@
+//
+// RewardOutboxTest.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.pollfish.callback.SurveyInfo;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * The reward journal on disk: pending rewards survive a reopen, a torn or corrupt tail is dropped
+ * with the records after it, and the file is truncated or compacted once it only holds rewards
+ * that were acknowledged.
+ */
+public class RewardOutboxTest
+{
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+  private final SurveyData data = SurveyData.from(new SurveyInfo(120, 80, 5, "Pollfish", "coins", 50, 100));
+  private File file;
+
+  @Before
+  public void setUp() throws IOException
+  {
+    file = File.createTempFile("rewards", ".journal");
+  }
+
+  @After
+  public void tearDown()
+  {
+    executor.shutdownNow();
+    file.delete();
+    new File(file.getPath() + ".tmp").delete();
+  }
+
+  @Test
+  public void pendingRewardsAreReadBack() throws Exception
+  {
+    RewardOutbox outbox = open();
+    long first = outbox.add("first", data);
+    long second = outbox.add(null, data);
+    outbox.acknowledge(first);
+    close(outbox);
+
+    List<RewardOutbox.Reward> rewards = reopen();
+    assertEquals(1, rewards.size());
+    assertEquals(second, rewards.get(0).id);
+    assertEquals(null, rewards.get(0).requestUUID);
+    assertEquals(data.toJSON(), rewards.get(0).data.toJSON());
+  }
+
+  @Test
+  public void tornTailIsTruncated() throws Exception
+  {
+    RewardOutbox outbox = open();
+    outbox.add("first", data);
+    outbox.add("second", data);
+    close(outbox);
+    long validSize = file.length();
+
+    // a record cut short by a crash: its length and checksum, and only part of its contents
+    try (FileOutputStream out = new FileOutputStream(file, true)) {
+      out.write(new byte[] { 0, 0, 0, 40, 1, 2, 3, 4, 1, 0, 0 });
+    }
+
+    assertEquals(2, reopen().size());
+    assertEquals(validSize, file.length());
+  }
+
+  @Test
+  public void corruptRecordIsDroppedWithTheRest() throws Exception
+  {
+    RewardOutbox outbox = open();
+    outbox.add("first", data);
+    close(outbox);
+    long firstSize = file.length();
+
+    outbox = open();
+    outbox.add("second", data);
+    outbox.add("third", data);
+    close(outbox);
+
+    // flip a byte in the contents of the second record, its checksum no longer matches
+    try (RandomAccessFile out = new RandomAccessFile(file, "rw")) {
+      out.seek(firstSize + 12);
+      int value = out.read();
+      out.seek(firstSize + 12);
+      out.write(value ^ 0xff);
+    }
+
+    List<RewardOutbox.Reward> rewards = reopen();
+    assertEquals(1, rewards.size());
+    assertEquals("first", rewards.get(0).requestUUID);
+    assertEquals(firstSize, file.length());
+  }
+
+  @Test
+  public void acknowledgingEveryRewardTruncates() throws Exception
+  {
+    RewardOutbox outbox = open();
+    long id = outbox.add("first", data);
+    outbox.flush();
+    await();
+    assertTrue(file.length() > 0);
+
+    outbox.acknowledge(id);
+    close(outbox);
+
+    assertEquals(0, file.length());
+    assertEquals(0, reopen().size());
+  }
+
+  @Test
+  public void largeJournalIsCompacted() throws Exception
+  {
+    RewardOutbox outbox = open();
+    long kept = outbox.add("kept", data);
+    outbox.flush();
+    await();
+    long recordSize = file.length();
+
+    // acknowledged rewards until the file would pass the compaction size several times over
+    long added = 0;
+    while (added * recordSize < 3 * RewardOutbox.COMPACT_SIZE) {
+      outbox.acknowledge(outbox.add("acknowledged", data));
+      if (++added % 100 == 0) {
+        outbox.flush();
+      }
+    }
+    close(outbox);
+
+    assertTrue("journal not compacted: " + file.length(), file.length() < RewardOutbox.COMPACT_SIZE);
+    List<RewardOutbox.Reward> rewards = reopen();
+    assertEquals(1, rewards.size());
+    assertEquals(kept, rewards.get(0).id);
+  }
+
+  // open the journal on the journal thread, as the plugin does
+  private RewardOutbox open() throws Exception
+  {
+    RewardOutbox outbox = new RewardOutbox(file, executor);
+    executor.submit(outbox::open).get();
+    return outbox;
+  }
+
+  // the rewards still pending in the journal, read by a new outbox
+  private List<RewardOutbox.Reward> reopen() throws Exception
+  {
+    RewardOutbox outbox = new RewardOutbox(file, executor);
+    List<RewardOutbox.Reward> rewards = executor.submit(outbox::open).get();
+    close(outbox);
+    return rewards;
+  }
+
+  private void close(RewardOutbox outbox) throws ExecutionException, InterruptedException
+  {
+    outbox.close();
+    await();
+  }
+
+  // wait until the journal thread has run everything handed to it so far
+  private void await() throws ExecutionException, InterruptedException
+  {
+    executor.submit(() -> { }).get();
+  }
+}
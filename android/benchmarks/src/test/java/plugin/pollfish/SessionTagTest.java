@@ -0,0 +1,73 @@
+//
+// SessionTagTest.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import static org.junit.Assert.assertEquals;
+
+import com.naef.jnlua.LuaState;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+
+/**
+ * A survey may be requested again while one is on screen (the runtime is resumed after the request
+ * UUID was changed): the "completed" and "closed" events of the survey on screen still carry the
+ * session and request UUID it was requested with.
+ */
+public class SessionTagTest extends PluginTestCase
+{
+  @Before
+  public void setUp()
+  {
+    start("requestUUID", "first").load();
+    fake.fire(FakePollfishGateway.Callback.RECEIVED);
+    fake.fire(FakePollfishGateway.Callback.OPENED);
+    harness.pollEvents();
+  }
+
+  @Test
+  public void completedAfterRequestingAgainKeepsDisplayedSession()
+  {
+    requestAgain();
+    fake.fire(FakePollfishGateway.Callback.COMPLETED);
+    fake.fire(FakePollfishGateway.Callback.CLOSED);
+
+    List<LuaState.Table> events = harness.pollEvents();
+    assertEquals(2, events.size());
+    for (LuaState.Table event : events) {
+      assertEquals(1, ((Number)event.get("sessionId")).longValue());
+      assertEquals("first", event.get("requestUUID"));
+    }
+  }
+
+  @Test
+  public void nextRequestIsTaggedWithItsOwnSession()
+  {
+    requestAgain();
+    fake.fire(FakePollfishGateway.Callback.CLOSED);
+    fake.fire(FakePollfishGateway.Callback.RECEIVED);
+
+    List<LuaState.Table> events = harness.pollEvents();
+    assertEquals("closed", events.get(0).get("phase"));
+    assertEquals("first", events.get(0).get("requestUUID"));
+    assertEquals("loaded", events.get(1).get("phase"));
+    assertEquals("second", events.get(1).get("requestUUID"));
+  }
+
+  // change the request UUID and resume, which requests a survey with it
+  private void requestAgain()
+  {
+    harness.call("setUserDetails", PluginHarness.table("requestUUID", "second"));
+    harness.suspend();
+    harness.resume();
+  }
+}
@@ -0,0 +1,161 @@
+//
+// SuspendBufferTest.java
+// Pollfish Plugin benchmarks
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import com.naef.jnlua.LuaState;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Events held while suspended: "loaded" and "failed" are coalesced to the latest one, the full
+ * buffer drops by its policy, and a "completed" event is never coalesced or dropped.
+ */
+public class SuspendBufferTest
+{
+  private final SurveyStats stats = new SurveyStats();
+
+  @Test
+  public void eventsAreHeldUntilResume()
+  {
+    SuspendBuffer buffer = new SuspendBuffer(4, SuspendBuffer.Drop.OLDEST, stats);
+    buffer.suspend();
+    assertTrue(buffer.isSuspended());
+
+    add(buffer, LuaLoader.PHASE_DISPLAYED, 1);
+    add(buffer, LuaLoader.PHASE_CLOSED, 2);
+
+    assertEquals(Arrays.asList("displayed 1", "closed 2"), describe(buffer.resume()));
+    assertFalse(buffer.isSuspended());
+    assertEquals(0, buffer.resume().length);
+  }
+
+  @Test
+  public void loadedAndFailedAreCoalesced()
+  {
+    SuspendBuffer buffer = new SuspendBuffer(8, SuspendBuffer.Drop.OLDEST, stats);
+    buffer.suspend();
+
+    add(buffer, LuaLoader.PHASE_LOADED, 1);
+    add(buffer, LuaLoader.PHASE_FAILED, 2);
+    add(buffer, LuaLoader.PHASE_DISPLAYED, 3);
+    add(buffer, LuaLoader.PHASE_LOADED, 4);
+    add(buffer, LuaLoader.PHASE_FAILED, 5);
+    add(buffer, LuaLoader.PHASE_LOADED, 6);
+
+    // the latest of each phase is kept, where it was added
+    assertEquals(Arrays.asList("displayed 3", "failed 5", "loaded 6"), describe(buffer.resume()));
+    assertEquals(3, getCounter("eventsCoalesced"));
+  }
+
+  @Test
+  public void completedIsNeverCoalesced()
+  {
+    SuspendBuffer buffer = new SuspendBuffer(8, SuspendBuffer.Drop.OLDEST, stats);
+    buffer.suspend();
+
+    add(buffer, LuaLoader.PHASE_COMPLETED, 1);
+    add(buffer, LuaLoader.PHASE_COMPLETED, 2);
+
+    assertEquals(Arrays.asList("completed 1", "completed 2"), describe(buffer.resume()));
+    assertEquals(0, getCounter("eventsCoalesced"));
+  }
+
+  @Test
+  public void fullBufferDropsOldest()
+  {
+    SuspendBuffer buffer = new SuspendBuffer(2, SuspendBuffer.Drop.OLDEST, stats);
+    buffer.suspend();
+
+    add(buffer, LuaLoader.PHASE_DISPLAYED, 1);
+    add(buffer, LuaLoader.PHASE_CLOSED, 2);
+    add(buffer, LuaLoader.PHASE_DISPLAYED, 3);
+
+    assertEquals(Arrays.asList("closed 2", "displayed 3"), describe(buffer.resume()));
+    assertEquals(1, getCounter("eventsDropped"));
+  }
+
+  @Test
+  public void fullBufferDropsNewest()
+  {
+    SuspendBuffer buffer = new SuspendBuffer(2, SuspendBuffer.Drop.NEWEST, stats);
+    buffer.suspend();
+
+    add(buffer, LuaLoader.PHASE_DISPLAYED, 1);
+    add(buffer, LuaLoader.PHASE_CLOSED, 2);
+    add(buffer, LuaLoader.PHASE_DISPLAYED, 3);
+
+    assertEquals(Arrays.asList("displayed 1", "closed 2"), describe(buffer.resume()));
+    assertEquals(1, getCounter("eventsDropped"));
+  }
+
+  @Test
+  public void completedIsNeverDropped()
+  {
+    SuspendBuffer buffer = new SuspendBuffer(2, SuspendBuffer.Drop.NEWEST, stats);
+    buffer.suspend();
+
+    // the buffer grows past its size rather than drop a reward
+    add(buffer, LuaLoader.PHASE_DISPLAYED, 1);
+    for (int i = 2; i <= 5; i++) {
+      add(buffer, LuaLoader.PHASE_COMPLETED, i);
+    }
+
+    assertEquals(Arrays.asList("displayed 1", "completed 2", "completed 3", "completed 4", "completed 5"),
+      describe(buffer.resume()));
+    assertEquals(0, getCounter("eventsDropped"));
+  }
+
+  @Test
+  public void oldestDroppedIsNotCompleted()
+  {
+    SuspendBuffer buffer = new SuspendBuffer(2, SuspendBuffer.Drop.OLDEST, stats);
+    buffer.suspend();
+
+    add(buffer, LuaLoader.PHASE_COMPLETED, 1);
+    add(buffer, LuaLoader.PHASE_DISPLAYED, 2);
+    add(buffer, LuaLoader.PHASE_CLOSED, 3);
+
+    assertEquals(Arrays.asList("completed 1", "closed 3"), describe(buffer.resume()));
+    assertEquals(1, getCounter("eventsDropped"));
+  }
+
+  // add an event of the phase, numbered so it can be told apart once pooled events are reused
+  private static void add(SuspendBuffer buffer, String phase, int number)
+  {
+    buffer.add(PollfishEvent.obtain(phase).set(PollfishEvent.Field.ATTEMPT, number));
+  }
+
+  // "<phase> <number>" of each event, which are recycled
+  private static List<String> describe(PollfishEvent[] events)
+  {
+    List<String> list = new ArrayList<>();
+    for (PollfishEvent event : events) {
+      list.add(event.getObject(PollfishEvent.Field.PHASE) + " " + event.getNumber(PollfishEvent.Field.ATTEMPT));
+      event.recycle();
+    }
+    return list;
+  }
+
+  private long getCounter(String key)
+  {
+    LuaState luaState = new LuaState();
+    stats.pushTo(luaState);
+    LuaState.Table counters = (LuaState.Table)((LuaState.Table)luaState.get(1)).get("counters");
+    return ((Number)counters.get(key)).longValue();
+  }
+}
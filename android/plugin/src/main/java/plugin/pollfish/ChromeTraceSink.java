@@ -0,0 +1,172 @@
+//
+// ChromeTraceSink.java
+// Pollfish Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+
+/**
+ * Trace sink that writes Chrome trace-event JSON, to be opened in chrome://tracing or Perfetto.
+ * <p/>
+ * Each section becomes a "B" / "E" event pair on the thread that traced it, timed with
+ * System.nanoTime() so the same sink works on devices and in JVM tests. Writes are buffered and
+ * serialized on the sink, so this is meant for diagnostic captures, not for release builds. A file
+ * that was not closed is still readable, the trace viewers accept a missing closing bracket.
+ */
+final class ChromeTraceSink implements PluginTrace.Sink
+{
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final Writer writer;
+  private final long origin = System.nanoTime();
+  private final int pid;
+  private final HashSet<Long> namedThreads = new HashSet<>();
+  private boolean isFirst = true;
+  private boolean isClosed = false;
+
+  ChromeTraceSink(File file) throws IOException
+  {
+    writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), BUFFER_SIZE);
+    writer.write('[');
+    pid = file.getAbsolutePath().hashCode() & 0xffff;        // any stable id, only used to group the events
+  }
+
+  @Override
+  public void begin(String name)
+  {
+    write(name, 'B');
+  }
+
+  @Override
+  public void end(String name)
+  {
+    write(name, 'E');
+  }
+
+  // write the buffered events to the file
+  synchronized void flush()
+  {
+    if (isClosed) {
+      return;
+    }
+
+    try {
+      writer.flush();
+    }
+    catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  synchronized void close()
+  {
+    if (isClosed) {
+      return;
+    }
+
+    try {
+      writer.write("\n]\n");
+      writer.close();
+    }
+    catch (IOException e) {
+      // the file is still usable without the closing bracket
+    }
+    isClosed = true;
+  }
+
+  private synchronized void write(String name, char phase)
+  {
+    if (isClosed) {
+      return;
+    }
+
+    final Thread thread = Thread.currentThread();
+    final long tid = thread.getId();
+    final long micros = (System.nanoTime() - origin) / 1000;
+
+    try {
+      // name each thread once, so the viewer shows "pollfish-plugin" rather than a number
+      if (namedThreads.add(tid)) {
+        separator();
+        writer.write("{\"name\":\"thread_name\",\"ph\":\"M\",\"pid\":");
+        writer.write(Integer.toString(pid));
+        writer.write(",\"tid\":");
+        writer.write(Long.toString(tid));
+        writer.write(",\"args\":{\"name\":\"");
+        writeEscaped(thread.getName());
+        writer.write("\"}}");
+      }
+
+      separator();
+      writer.write("{\"name\":\"");
+      writeEscaped(name);
+      writer.write("\",\"ph\":\"");
+      writer.write(phase);
+      writer.write("\",\"ts\":");
+      writer.write(Long.toString(micros));
+      writer.write(",\"pid\":");
+      writer.write(Integer.toString(pid));
+      writer.write(",\"tid\":");
+      writer.write(Long.toString(tid));
+      writer.write('}');
+    }
+    catch (IOException e) {
+      fail(e);
+    }
+  }
+
+  private void separator() throws IOException
+  {
+    if (isFirst) {
+      isFirst = false;
+      writer.write('\n');
+    }
+    else {
+      writer.write(",\n");
+    }
+  }
+
+  private void writeEscaped(String text) throws IOException
+  {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if ((c == '"') || (c == '\\')) {
+        writer.write('\\');
+        writer.write(c);
+      }
+      else if (c < 0x20) {
+        writer.write(String.format("\\u%04x", (int)c));
+      }
+      else {
+        writer.write(c);
+      }
+    }
+  }
+
+  // stop writing after an I/O error, the trace is best effort
+  private void fail(IOException e)
+  {
+    isClosed = true;
+    PluginLog.warning(LuaLoader.PLUGIN_NAME, "trace file closed after a write error: {}", e);
+
+    try {
+      writer.close();
+    }
+    catch (IOException ignored) {
+      // already failing
+    }
+  }
+}
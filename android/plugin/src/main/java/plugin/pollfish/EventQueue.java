@@ -0,0 +1,89 @@
+//
+// EventQueue.java
+// Pollfish Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Bounded, lock-free queue of events waiting to be collected by pollfish.pollEvents().
+ * <p/>
+ * Any number of threads may offer events (SDK callbacks arrive on whatever thread the SDK uses),
+ * but only the Lua thread polls, which keeps the consumer side free of atomic read-modify-write
+ * operations. When the queue is full new events are rejected and counted as dropped.
+ */
+final class EventQueue
+{
+  private final AtomicReferenceArray<PollfishEvent> slots;
+  private final int mask;
+  private final AtomicLong producerIndex = new AtomicLong();
+  private final AtomicLong consumerIndex = new AtomicLong();
+  private final AtomicLong droppedCount = new AtomicLong();
+
+  // capacity is rounded up to the next power of two
+  EventQueue(int capacity)
+  {
+    int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+    slots = new AtomicReferenceArray<>(size);
+    mask = size - 1;
+  }
+
+  int capacity()
+  {
+    return mask + 1;
+  }
+
+  // add an event, returns false (and counts a drop) when the queue is full
+  boolean offer(PollfishEvent event)
+  {
+    long index;
+
+    do {
+      index = producerIndex.get();
+      if (index - consumerIndex.get() >= capacity()) {
+        droppedCount.incrementAndGet();
+        return false;
+      }
+    } while (! producerIndex.compareAndSet(index, index + 1));
+
+    slots.lazySet((int)index & mask, event);
+    return true;
+  }
+
+  // remove the oldest event, or return null if there is none (single consumer only)
+  PollfishEvent poll()
+  {
+    long index = consumerIndex.get();
+    int slot = (int)index & mask;
+    PollfishEvent event = slots.get(slot);
+
+    if (event == null) {
+      // either empty, or a producer has claimed the slot but not written it yet
+      return null;
+    }
+
+    slots.lazySet(slot, null);
+    consumerIndex.lazySet(index + 1);
+    return event;
+  }
+
+  // number of events currently waiting (approximate while producers are active)
+  int size()
+  {
+    long size = producerIndex.get() - consumerIndex.get();
+    return (int)Math.max(0, Math.min(size, capacity()));
+  }
+
+  // number of events dropped since the last call
+  long takeDroppedCount()
+  {
+    return droppedCount.getAndSet(0);
+  }
+}
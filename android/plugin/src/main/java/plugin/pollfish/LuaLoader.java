@@ -14,14 +14,12 @@ import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.os.Build;
 import android.os.Handler;
-import android.provider.Settings;
-import android.util.Log;
 
 import androidx.annotation.Nullable;
 
 import com.naef.jnlua.LuaState;
-import com.naef.jnlua.JavaFunction;
 import com.naef.jnlua.LuaType;
+import com.naef.jnlua.JavaFunction;
 import com.naef.jnlua.NamedJavaFunction;
 
 import com.ansca.corona.CoronaEnvironment;
@@ -29,10 +27,7 @@ import com.ansca.corona.CoronaRuntime;
 import com.ansca.corona.CoronaRuntimeListener;
 import com.ansca.corona.CoronaActivity;
 import com.ansca.corona.CoronaLua;
-import com.ansca.corona.CoronaLuaEvent;
-import com.ansca.corona.CoronaRuntimeTask;
 import com.ansca.corona.CoronaRuntimeTaskDispatcher;
-import com.pollfish.Pollfish;
 import com.pollfish.builder.Params;
 import com.pollfish.builder.Position;
 import com.pollfish.builder.UserProperties;
@@ -44,12 +39,14 @@ import com.pollfish.callback.PollfishSurveyReceivedListener;
 import com.pollfish.callback.PollfishUserNotEligibleListener;
 import com.pollfish.callback.SurveyInfo;
 
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.File;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
 import java.util.List;
-import java.util.Map;
-
-import org.json.JSONObject;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.atomic.AtomicReference;
 
 // Pollfish SDK imports
 
@@ -62,85 +59,97 @@ import org.json.JSONObject;
  */
 public class LuaLoader implements JavaFunction, CoronaRuntimeListener
 {
-  private static final String PLUGIN_NAME               = "plugin.pollfish";
+  static final String PLUGIN_NAME                       = "plugin.pollfish";
   private static final String PLUGIN_VERSION            = "1.2.0";
   private static final String PLUGIN_GOOGLE_SDK_VERSION = "6.4.0 for Google Play"; // no API function to get SDK version (yet)
   private static final String PLUGIN_AMAZON_SDK_VERSION = "6.4.0 Universal";
 
-  private static final String EVENT_NAME    = "adsRequest";
-  private static final String PROVIDER_NAME = "pollfish";
-
-  // positions
-  private static final String POS_TOP    = "top";
-  private static final String POS_BOTTOM = "bottom";
-  private static final String POS_LEFT   = "left";
-  private static final String POS_RIGHT  = "right";
-  private static final String POS_CENTER = "center";
-
-  // validation arrays
-  private static final List<String> validButtonPos = new ArrayList<>();
-  private static final List<String> validAlignPos = new ArrayList<>();
-  private static final List<String> validGender = new ArrayList<>();
+  static final String EVENT_NAME    = "adsRequest";
+  static final String PROVIDER_NAME = "pollfish";
 
   // event phases
-  private static final String PHASE_INIT      = "init";
-  private static final String PHASE_LOADED    = "loaded";
-  private static final String PHASE_DISPLAYED = "displayed";
-  private static final String PHASE_CLOSED    = "closed";
-  private static final String PHASE_COMPLETED = "completed";
-  private static final String PHASE_FAILED    = "failed";
+  static final String PHASE_INIT      = "init";
+  static final String PHASE_LOADED    = "loaded";
+  static final String PHASE_DISPLAYED = "displayed";
+  static final String PHASE_CLOSED    = "closed";
+  static final String PHASE_COMPLETED = "completed";
+  static final String PHASE_FAILED    = "failed";
 
   // response codes
   private static final String RESPONSE_NOT_ELIGIBLE  = "notEligible";
   private static final String RESPONSE_NOT_AVAILABLE = "notAvailable";
 
-  // add missing keys
-  private static final String EVENT_PHASE_KEY = "phase";
-  private static final String EVENT_TYPE_KEY  = "type";
-  private static final String EVENT_DATA_KEY  = "data";
-
   // event types
   private static final String TYPE_SURVEY = "survey";
 
-  // Pollfish Object Dictionary Keys
-  private static final String SURVEY_READY_KEY    = "surveyReady";
-  private static final String APIKEY_KEY          = "apiKey";
-  private static final String CUSTOM_MODE_KEY     = "customMode";
-  private static final String OFFERWALL_MODE_KEY  = "offerwallMode";
-  private static final String REWARD_MODE_KEY     = "rewardMode";
-  private static final String DEVELOPER_MODE_KEY  = "developerMode";
-  private static final String POSITION_KEY        = "position";
-  private static final String PADDING_KEY         = "padding";
-  private static final String REQUEST_UUID_KEY    = "requestUUID";
-  private static final String USER_ATTRIBUTES_KEY = "userAttributes";
-
-  // message constants
-  private static final String CORONA_TAG  = "Corona";
-  private static final String ERROR_MSG   = "ERROR: ";
-  private static final String WARNING_MSG = "WARNING: ";
-  private static final Map<String, Object> pollfishObjects = new HashMap<>();    // keep track of loaded objects
-  private static int coronaListener = CoronaLua.REFNIL;
+  // trace sections
+  private static final String TRACE_SDK_RECEIVED      = "sdk.surveyReceived";
+  private static final String TRACE_SDK_COMPLETED     = "sdk.surveyCompleted";
+  private static final String TRACE_SDK_NOT_AVAILABLE = "sdk.surveyNotAvailable";
+  private static final String TRACE_SDK_NOT_ELIGIBLE  = "sdk.userNotEligible";
+  private static final String TRACE_SDK_OPENED        = "sdk.opened";
+  private static final String TRACE_SDK_CLOSED        = "sdk.closed";
+  private static final String TRACE_EVENT_DISPATCH    = "event.dispatch";
+
+  // trace file written when init() is called with options.trace = "file"
+  private static final String TRACE_FILE_NAME = "pollfish-trace.json";
+
+  // size of the queue used when events are collected with pollEvents()
+  private static final int EVENT_QUEUE_CAPACITY = 64;
+
+  // device log tag
+  static final String CORONA_TAG = "Corona";
+
+  private static final AtomicReference<PollfishConfig> pollfishConfig = new AtomicReference<>(PollfishConfig.EMPTY); // published request parameters
+  private static volatile PollfishConfig appliedConfig = null;                   // config last passed to Pollfish.initWith
+  private static volatile WeakReference<CoronaActivity> appliedActivity = new WeakReference<>(null); // activity last passed to Pollfish.initWith
+  private static volatile int coronaListener = CoronaLua.REFNIL;
   private static CoronaRuntime coronaRuntime;
-  private static CoronaRuntimeTaskDispatcher coronaRuntimeTaskDispatcher = null;
-  private static String functionSignature = "";                                  // used in error reporting functions
-  private static boolean isSurveyOpened = false;                                 // key track of if a survey is onscreen
-  private static boolean appIsRegistered = false;                                // true when app is successfully registered with Pollfish
-  private static boolean hasLoadedOnce = false;                                  // flag used in isLoaded() to make sure load() has been called
-
-  // Device info
-  private static String advertisingId = "unknown";
-  private static String androidId 	= "unknown";
-  private static String appLabel 		= "unknown";
-  private static String appVersion 	= "unknown";
-  private static boolean didGetInfo = false;  // true after first call to beacon
+  private static volatile CoronaRuntimeTaskDispatcher coronaRuntimeTaskDispatcher = null;
+  private static volatile EventQueue eventQueue = null;                          // non-null when events are collected with pollEvents()
+  private static volatile SuspendBuffer suspendBuffer = null;                    // holds events while the runtime is suspended
+  private static volatile long subscribedPhases = PluginOptions.ALL_PHASES;      // bit mask of the phases sent to Lua
+  private static volatile boolean isDataTable = false;                           // true to send event.data as a Lua table instead of JSON
+  private static volatile SurveyData lastReceivedSurvey = null;                  // most recent survey received from the SDK
+  private static volatile SurveyData lastCompletedSurvey = null;                 // most recent survey completed by the user
+  private static volatile PrefetchScheduler prefetchScheduler = null;            // non-null when a survey is kept warm in the background
+  private static volatile RetryEngine retryEngine = null;                        // non-null when failed requests are retried
+  private static volatile RewardOutbox rewardOutbox = null;                      // non-null when completed surveys are journaled
+  private static RewardOutbox openingOutbox = null;                              // the journal being read for init() (plugin thread)
+  private static volatile PollfishGateway pollfish = PollfishGateway.SDK;        // all SDK calls go through here
+  private static final UiCommandCoalescer uiCommands = new UiCommandCoalescer(); // SDK calls on the UI thread, latest state only
+
+  // background thread for plugin timers, and the only thread that changes plugin state
+  // init() and runtime events wait for their state changes, other Lua calls and SDK callbacks are
+  // handed over in order; the UI thread is only used for the SDK calls that need it
+  private static volatile Thread pluginThread = null;
+  private static final ScheduledExecutorService pluginExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "pollfish-plugin");
+    thread.setDaemon(true);
+    pluginThread = thread;
+    return thread;
+  });
+
+  // the reward journal is written and synced here, so the plugin thread never waits for the disk
+  private static final ScheduledExecutorService journalExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "pollfish-journal");
+    thread.setDaemon(true);
+    return thread;
+  });
+  private static final SurveyLifecycle lifecycle = new SurveyLifecycle();        // registration and survey state
+  private static final SurveyStats stats = new SurveyStats();                    // counters and latencies for getStats()
+  private static final SurveySessions sessions = new SurveySessions();           // recent survey requests for getSessions()
+  private static volatile ChromeTraceSink traceFile = null;                      // non-null when tracing to a file
+
+  private static volatile PluginMetadata pluginMetadata = PluginMetadata.EMPTY; // manifest <meta-data>, read when the plugin is loaded
 
   // delegates
-  private static CoronaSurveyReceivedDelegate surveyReceivedDelegate = null;
-  private static CoronaSurveyNotAvailableDelegate surveyNotAvailableDelegate = null;
-  private static CoronaSurveyCompletedDelegate surveyCompletedDelegate = null;
-  private static CoronaUserNotEligibleDelegate userNotEligibleDelegate = null;
-  private static CoronaSurveyOpenedDelegate surveyOpenedDelegate = null;
-  private static CoronaSurveyClosedDelegate surveyClosedDelegate = null;
+  private static volatile CoronaSurveyReceivedDelegate surveyReceivedDelegate = null;
+  private static volatile CoronaSurveyNotAvailableDelegate surveyNotAvailableDelegate = null;
+  private static volatile CoronaSurveyCompletedDelegate surveyCompletedDelegate = null;
+  private static volatile CoronaUserNotEligibleDelegate userNotEligibleDelegate = null;
+  private static volatile CoronaSurveyOpenedDelegate surveyOpenedDelegate = null;
+  private static volatile CoronaSurveyClosedDelegate surveyClosedDelegate = null;
 
   /**
    * <p/>
@@ -158,46 +167,6 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
     CoronaEnvironment.addRuntimeListener(this);
   }
 
-  // Get device info for pollfish registration
-  private static void getDeviceInfo()
-  {
-    final CoronaActivity coronaActivity = CoronaEnvironment.getCoronaActivity();
-
-    if (coronaActivity != null) {
-      Runnable runnableActivity = new Runnable() {
-        public void run() {
-          final Context coronaContext = CoronaEnvironment.getApplicationContext();
-
-          try {
-            // Get the app version
-            appVersion = coronaContext.getPackageManager().getPackageInfo(coronaContext.getPackageName(), 0).versionName;
-
-            // Get the application info
-            final PackageManager packageManager = coronaContext.getApplicationContext().getPackageManager();
-            ApplicationInfo applicationInfo = packageManager.getApplicationInfo(coronaContext.getPackageName(), 0);
-
-            if (applicationInfo != null) {
-              // Get the app label
-              CharSequence appLabelSeq = packageManager.getApplicationLabel(applicationInfo);
-              if (appLabelSeq != null) {
-                appLabel = appLabelSeq.toString();
-              }
-            }
-
-            androidId = Settings.Secure.getString(coronaContext.getContentResolver(), Settings.Secure.ANDROID_ID);
-            didGetInfo = true;
-          }
-          catch (Exception e) {
-            throw new RuntimeException(e);
-          }
-        }
-      };
-
-      coronaActivity.runOnUiThread(runnableActivity);
-    }
-  }
-
-
   /**
    * Called when this plugin is being loaded via the Lua require() function.
    * <p/>
@@ -221,11 +190,30 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
       new Show(),
       new Hide(),
       new IsLoaded(),
-      new SetUserDetails()
+      new SetUserDetails(),
+      new PollEvents(),
+      new GetSurveyInfo(),
+      new GetLog(),
+      new GetStats(),
+      new GetSessions(),
+      new AcknowledgeReward(),
+      new Subscribe(),
+      new Configure()
     };
+    // every call from Lua is a trace section
+    for (int i = 0; i < luaFunctions.length; i++) {
+      luaFunctions[i] = PluginTrace.wrap(luaFunctions[i]);
+    }
+
     String libName = L.toString(1);
     L.register(libName, luaFunctions);
 
+    // read the manifest once (this is not the UI thread)
+    final Context context = CoronaEnvironment.getApplicationContext();
+    if (context != null) {
+      pluginMetadata = PluginMetadata.load(context);
+    }
+
     // Returning 1 indicates that the Lua require() function will return the above Lua
     return 1;
   }
@@ -240,7 +228,7 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
    *                Provides a LuaState object that allows the application to extend the Lua API.
    */
   @Override
-  public void onLoaded(CoronaRuntime runtime)
+  public void onLoaded(final CoronaRuntime runtime)
   {
     // Note that this method will not be called the first time a Corona activity has been
     // launched.
@@ -248,30 +236,21 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
     // this plugin has been required-in by Lua, which occurs after the onLoaded() event.
     // However, this method will be called when a 2nd Corona activity has been created.
 
-    if (coronaRuntimeTaskDispatcher == null) {
-      coronaRuntimeTaskDispatcher = new CoronaRuntimeTaskDispatcher(runtime);
-      coronaRuntime = runtime;
-
-      validButtonPos.add(POS_TOP);
-      validButtonPos.add(POS_BOTTOM);
-      validButtonPos.add(POS_CENTER);
+    runOnPluginThread(() -> {
+      if (coronaRuntimeTaskDispatcher == null) {
+        coronaRuntimeTaskDispatcher = new CoronaRuntimeTaskDispatcher(runtime);
+        coronaRuntime = runtime;
 
-      validAlignPos.add(POS_LEFT);
-      validAlignPos.add(POS_RIGHT);
+        lifecycle.reset();
 
-      validGender.add("male");
-      validGender.add("female");
-      validGender.add("other");
-
-      pollfishObjects.put(SURVEY_READY_KEY, false);
-
-      surveyReceivedDelegate = new CoronaSurveyReceivedDelegate();
-      surveyCompletedDelegate = new CoronaSurveyCompletedDelegate();
-      surveyNotAvailableDelegate = new CoronaSurveyNotAvailableDelegate();
-      userNotEligibleDelegate = new CoronaUserNotEligibleDelegate();
-      surveyOpenedDelegate = new CoronaSurveyOpenedDelegate();
-      surveyClosedDelegate = new CoronaSurveyClosedDelegate();
-    }
+        surveyReceivedDelegate = new CoronaSurveyReceivedDelegate();
+        surveyCompletedDelegate = new CoronaSurveyCompletedDelegate();
+        surveyNotAvailableDelegate = new CoronaSurveyNotAvailableDelegate();
+        userNotEligibleDelegate = new CoronaUserNotEligibleDelegate();
+        surveyOpenedDelegate = new CoronaSurveyOpenedDelegate();
+        surveyClosedDelegate = new CoronaSurveyClosedDelegate();
+      }
+    });
   }
 
   /**
@@ -300,6 +279,34 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
   @Override
   public void onSuspended(CoronaRuntime runtime)
   {
+    runOnPluginThread(() -> {
+      // hold events until onResumed()
+      final SuspendBuffer buffer = suspendBuffer;
+      if (buffer != null) {
+        buffer.suspend();
+      }
+
+      final PrefetchScheduler scheduler = prefetchScheduler;
+      if (scheduler != null) {
+        scheduler.pause();
+      }
+
+      final RetryEngine retry = retryEngine;
+      if (retry != null) {
+        retry.pause();
+      }
+
+      // the app may be killed while in the background
+      final ChromeTraceSink trace = traceFile;
+      if (trace != null) {
+        trace.flush();
+      }
+
+      final RewardOutbox outbox = rewardOutbox;
+      if (outbox != null) {
+        outbox.flush();
+      }
+    });
   }
 
   /**
@@ -312,7 +319,26 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
   @Override
   public void onResumed(CoronaRuntime runtime)
   {
-    processPollfishRequest();
+    runOnPluginThread(() -> {
+      // deliver what arrived while suspended before anything new
+      final SuspendBuffer buffer = suspendBuffer;
+      if (buffer != null) {
+        deliverBatch(buffer.resume());
+      }
+
+      // only re-initialize if the request or the activity has changed since the last request
+      processPollfishRequest(false);
+
+      final PrefetchScheduler scheduler = prefetchScheduler;
+      if (scheduler != null) {
+        scheduler.resume();
+      }
+
+      final RetryEngine retry = retryEngine;
+      if (retry != null) {
+        retry.resume();
+      }
+    });
   }
 
   /**
@@ -334,29 +360,82 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
     CoronaLua.deleteRef(runtime.getLuaState(), coronaListener);
     coronaListener = CoronaLua.REFNIL;
 
-    coronaRuntimeTaskDispatcher = null;
+    runOnPluginThread(() -> {
+      coronaRuntimeTaskDispatcher = null;
+
+      final PrefetchScheduler scheduler = prefetchScheduler;
+      prefetchScheduler = null;
+      if (scheduler != null) {
+        scheduler.stop();
+      }
+
+      final RetryEngine retry = retryEngine;
+      retryEngine = null;
+      if (retry != null) {
+        retry.cancel();
+      }
+
+      // rewards not acknowledged yet are replayed on the next init()
+      openingOutbox = null;
+      final RewardOutbox outbox = rewardOutbox;
+      rewardOutbox = null;
+      if (outbox != null) {
+        outbox.close();
+      }
+
+      // release any events that were never delivered or collected
+      final SuspendBuffer buffer = suspendBuffer;
+      suspendBuffer = null;
+      if (buffer != null) {
+        buffer.clear();
+      }
 
-    // release all objects
-    pollfishObjects.clear();
-    validGender.clear();
-    validAlignPos.clear();
-    validButtonPos.clear();
+      final EventQueue queue = eventQueue;
+      eventQueue = null;
+      if (queue != null) {
+        for (PollfishEvent event = queue.poll(); event != null; event = queue.poll()) {
+          event.recycle();
+        }
+      }
 
-    surveyReceivedDelegate = null;
-    surveyNotAvailableDelegate = null;
-    surveyCompletedDelegate = null;
-    userNotEligibleDelegate = null;
-    surveyOpenedDelegate = null;
-    surveyClosedDelegate = null;
+      subscribedPhases = PluginOptions.ALL_PHASES;
+
+      // release all objects
+      uiCommands.clear();
+      pollfishConfig.set(PollfishConfig.EMPTY);
+      appliedConfig = null;
+      appliedActivity = new WeakReference<>(null);
+      lastReceivedSurvey = null;
+      lastCompletedSurvey = null;
+
+      surveyReceivedDelegate = null;
+      surveyNotAvailableDelegate = null;
+      surveyCompletedDelegate = null;
+      userNotEligibleDelegate = null;
+      surveyOpenedDelegate = null;
+      surveyClosedDelegate = null;
+
+      lifecycle.reset();
+      stats.reset();
+      sessions.reset();
+
+      final ChromeTraceSink trace = traceFile;
+      traceFile = null;
+      PluginTrace.setSink(PluginTrace.SYSTRACE);
+      if (trace != null) {
+        trace.close();
+      }
 
-    appIsRegistered = false;
-    hasLoadedOnce = false;
+      // the log buffer is kept for diagnostics, only the level goes back to its default
+      PluginLog.setLevel(PluginLog.DEFAULT_LEVEL);
+    });
   }
 
   // -------------------------------------------------------------------
   // helper functions
   // -------------------------------------------------------------------
 
+  // reads the manifest on every call, plugin code uses the pluginMetadata snapshot instead
   public static String getMetadata(Context context, String name) {
     try {
       ApplicationInfo appInfo = context.getPackageManager().getApplicationInfo(
@@ -372,150 +451,439 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
     return null;
   }
 
-  private void processPollfishRequest()
+  // run a state change on the plugin thread and wait for it (inline when already there)
+  // exceptions are rethrown to the caller, so a failing Lua call still raises a Lua error
+  // an interrupted wait is logged and the task left to finish, the interrupt is kept for the caller
+  // only for state that is read right after the call, other Lua calls use postToPluginThread()
+  static void runOnPluginThread(Runnable task)
+  {
+    if (Thread.currentThread() == pluginThread) {
+      task.run();
+      return;
+    }
+
+    try {
+      pluginExecutor.submit(task).get();
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException)cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error)cause;
+      }
+      throw new IllegalStateException(cause);
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      PluginLog.warning(PLUGIN_NAME, "interrupted while waiting for the plugin thread, the call completes in the background");
+    }
+  }
+
+  // wait until the journal thread has run everything handed to it so far (used by the benchmarks)
+  static void awaitJournalThread()
+  {
+    try {
+      journalExecutor.submit(() -> { }).get();
+    }
+    catch (ExecutionException e) {
+      // a no-op task does not fail
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // hand a state change to the plugin thread without waiting for it
+  private static void postToPluginThread(Runnable task)
+  {
+    pluginExecutor.execute(task);
+  }
+
+  // hand the state change of a Lua call to the plugin thread without waiting for it
+  // the call has returned by then, so a failure is logged for it instead of raised
+  private static void postToPluginThread(final String context, final Runnable task)
+  {
+    pluginExecutor.execute(() -> {
+      try {
+        task.run();
+      }
+      catch (RuntimeException e) {
+        PluginLog.error(context, "failed: {}", e);
+      }
+    });
+  }
+
+  // replace the SDK, for JVM harnesses (the SDK is used when null)
+  static void setGateway(@Nullable PollfishGateway gateway)
+  {
+    pollfish = (gateway != null) ? gateway : PollfishGateway.SDK;
+    uiCommands.setGateway(pollfish);
+  }
+
+  // apply a copy-on-write update to the published config and return the new snapshot
+  private static PollfishConfig updateConfig(PollfishConfig.Update update)
+  {
+    PollfishConfig current;
+    PollfishConfig updated;
+
+    do {
+      current = pollfishConfig.get();
+      PollfishConfig.Builder builder = current.buildUpon();
+      update.applyTo(builder);
+      updated = builder.build();
+    } while (! pollfishConfig.compareAndSet(current, updated));
+
+    return updated;
+  }
+
+  // initialize the SDK with the current config and request a survey (called on the plugin thread)
+  // unless forced, nothing is done when the request and activity match the last applied ones
+  private void processPollfishRequest(boolean force)
+  {
+    processPollfishRequest(force, false);
+  }
+
+  // a refresh replaces a survey that is still ready: it stays ready until the new one arrives,
+  // and stays in place if the refresh fails
+  private void processPollfishRequest(boolean force, boolean isRefresh)
   {
     // make sure init has been called before proceeding
     if (coronaListener != CoronaLua.REFNIL) {
       final CoronaActivity coronaActivity = CoronaEnvironment.getCoronaActivity();
-      final String fApiKey = (String)pollfishObjects.get(APIKEY_KEY);
-      final String fRequestUUID = (String)pollfishObjects.get(REQUEST_UUID_KEY);
-      final Position fPollfishPosition = (Position)pollfishObjects.get(POSITION_KEY);
-      final int fPadding = (int)pollfishObjects.get(PADDING_KEY);
-      final boolean fDebugMode = (boolean)pollfishObjects.get(DEVELOPER_MODE_KEY);
-      final boolean fCustomMode = (boolean)pollfishObjects.get(CUSTOM_MODE_KEY);
-      final UserProperties fUserAttributes = (UserProperties)pollfishObjects.get(USER_ATTRIBUTES_KEY);
-      final boolean fOfferwallMode = (boolean)pollfishObjects.get(OFFERWALL_MODE_KEY);
-      final boolean fRewardMode = (boolean)pollfishObjects.get(REWARD_MODE_KEY);
 
+      // take one consistent snapshot of the request parameters
+      final PollfishConfig config = pollfishConfig.get();
 
       // Run the activity on the uiThread
-      if ((coronaActivity != null) && (hasLoadedOnce)) {
-        coronaActivity.runOnUiThread(new Runnable() {
-          @Override
-          public void run() {
-            Params.Builder paramsBuilder = new Params.Builder(fApiKey);
-
-            paramsBuilder = paramsBuilder.indicatorPosition(fPollfishPosition)
-              .indicatorPadding(fPadding)
-              .releaseMode(!fDebugMode)
-                    .offerwallMode(fOfferwallMode)
-                    .rewardMode(fRewardMode)
-              .pollfishSurveyReceivedListener(surveyReceivedDelegate)
-              .pollfishSurveyCompletedListener(surveyCompletedDelegate)
-              .pollfishSurveyNotAvailableListener(surveyNotAvailableDelegate)
-              .pollfishUserNotEligibleListener(userNotEligibleDelegate)
-              .pollfishOpenedListener(surveyOpenedDelegate)
-              .pollfishClosedListener(surveyClosedDelegate);
-
-            if (fRequestUUID != null) {
-              paramsBuilder = paramsBuilder.requestUUID(fRequestUUID);
-            }
-
-            if (fUserAttributes != null) {
-              paramsBuilder = paramsBuilder.userProperties(fUserAttributes);
-            }
-
-            // initialize and load
-            Pollfish.initWith(coronaActivity, paramsBuilder.build());
-
-            // make sure survey is not automatically displayed if using custom mode
-            if (fCustomMode) {
-              Pollfish.hide();
-            }
-          }
-        });
+      if ((coronaActivity != null) && lifecycle.get().hasLoaded()) {
+        if (! force && config.hasSameRequestAs(appliedConfig) && (coronaActivity == appliedActivity.get())) {
+          return;
+        }
+
+        // a refresh keeps the current survey available, anything else waits for the new one
+        // LOADING is refused while a survey is on screen, the request is still made as before
+        if (! isRefresh || (lifecycle.transitionTo(SurveyLifecycle.State.REFRESHING) == null)) {
+          transitionTo(SurveyLifecycle.State.LOADING);
+        }
+
+        appliedConfig = config;
+        appliedActivity = new WeakReference<>(coronaActivity);
+
+        PluginLog.debug(null, "requesting survey ({})", force ? "forced" : "request parameters changed");
+
+        stats.count(SurveyStats.Counter.LOADS);
+        stats.start(SurveyStats.Latency.LOAD);
+        sessions.start(config, stats.elapsedMs());
+
+        // build the params here, only the SDK calls are made on the uiThread
+        Params.Builder paramsBuilder = new Params.Builder(config.apiKey);
+
+        paramsBuilder = paramsBuilder.indicatorPosition(config.position)
+          .indicatorPadding(config.padding)
+          .releaseMode(!config.developerMode)
+          .offerwallMode(config.offerwallMode)
+          .rewardMode(config.rewardMode)
+          .pollfishSurveyReceivedListener(surveyReceivedDelegate)
+          .pollfishSurveyCompletedListener(surveyCompletedDelegate)
+          .pollfishSurveyNotAvailableListener(surveyNotAvailableDelegate)
+          .pollfishUserNotEligibleListener(userNotEligibleDelegate)
+          .pollfishOpenedListener(surveyOpenedDelegate)
+          .pollfishClosedListener(surveyClosedDelegate);
+
+        if (config.requestUUID != null) {
+          paramsBuilder = paramsBuilder.requestUUID(config.requestUUID);
+        }
+
+        if (config.userAttributes != null) {
+          paramsBuilder = paramsBuilder.userProperties(userPropertiesOf(config.userAttributes));
+        }
+
+        final Params params = paramsBuilder.build();
+
+        // initialize and load on the uiThread
+        // make sure survey is not automatically displayed if using custom mode
+        uiCommands.load(coronaActivity, params, config.customMode);
       }
     }
   }
 
-  // log message to console
-  private void logMsg(String msgType, String errorMsg)
+  // set the request parameters given to load()
+  private static void applyLoadOptions(PollfishConfig.Builder builder, LuaOptions.Values options)
+  {
+    PluginOptions.VerticalAlign yAlign = options.getChoice(PluginOptions.LOAD_Y_ALIGN);
+    PluginOptions.HorizontalAlign xAlign = options.getChoice(PluginOptions.LOAD_X_ALIGN);
+
+    builder
+      .padding((int)options.getNumber(PluginOptions.LOAD_PADDING))
+      .position(PluginOptions.positionOf(yAlign, xAlign))
+      .customMode(options.getBoolean(PluginOptions.LOAD_CUSTOM_MODE))
+      .offerwallMode(options.getBoolean(PluginOptions.LOAD_OFFERWALL_MODE))
+      .rewardMode(options.getBoolean(PluginOptions.LOAD_REWARD_MODE));
+  }
+
+  // the user attributes given to setUserDetails()
+  private static PollfishConfig.UserAttributes userAttributesOf(LuaOptions.Values options)
+  {
+    // facebookId, twitterId are no longer supported by the SDK
+    // location automatically set on Android if developer adds location-permissions to the manifest
+    return new PollfishConfig.UserAttributes(options.<PluginOptions.Gender>getChoice(PluginOptions.USER_GENDER));
+  }
+
+  // the SDK user properties of the user attributes, built for each request
+  private static UserProperties userPropertiesOf(PollfishConfig.UserAttributes attributes)
+  {
+    // define user attributes dictionary
+    UserProperties.Builder userAttributes = new UserProperties.Builder();
+
+    if (attributes.gender != null) {
+      userAttributes.gender(attributes.gender.sdkGender);
+    }
+
+    return userAttributes.build();
+  }
+
+  // move the lifecycle to the target state, a refused transition is logged and the state is kept
+  private static boolean transitionTo(SurveyLifecycle.State target)
+  {
+    if (lifecycle.transitionTo(target) == null) {
+      PluginLog.warning(null, "survey state {} refused in state {}, state kept", target, lifecycle.get());
+      return false;
+    }
+    return true;
+  }
+
+  // the survey was completed or failed, a refused transition is logged and the state is kept
+  private static void finishSurvey(SurveyLifecycle.State outcome)
+  {
+    if (lifecycle.finish(outcome) == null) {
+      PluginLog.warning(null, "survey state {} refused in state {}, state kept", outcome, lifecycle.get());
+    }
+  }
+
+  // request a survey with the current config, as load() does (called on the plugin thread)
+  private void requestSurvey(String context)
   {
-    String functionID = functionSignature;
-    if (!functionID.isEmpty()) {
-      functionID += ", ";
+    // no survey is ready until the new request has been answered
+    if (lifecycle.transitionTo(SurveyLifecycle.State.LOADING) == null) {
+      PluginLog.warning(context, "A survey is on screen, load() ignored");
+      return;
+    }
+
+    // a new load starts a new series of attempts
+    final RetryEngine retry = retryEngine;
+    if (retry != null) {
+      retry.reset();
     }
 
-    Log.i(CORONA_TAG, msgType + functionID + errorMsg);
+    processPollfishRequest(true);
+
+    final PrefetchScheduler scheduler = prefetchScheduler;
+    if (scheduler != null) {
+      scheduler.start();
+    }
   }
 
-  // return true if SDK is properly initialized
-  private boolean isSDKInitialized()
+  // return true if SDK is properly initialized, context is the calling function for error messages
+  private boolean isSDKInitialized(String context)
   {
     if (coronaListener == CoronaLua.REFNIL) {
-      logMsg(ERROR_MSG, "pollfish.init() must be called before calling other API functions");
+      PluginLog.error(context, "pollfish.init() must be called before calling other API functions");
       return false;
     }
 
-    if (! appIsRegistered) {
-      logMsg(ERROR_MSG, "The Pollfish apiKey is not registered");
+    if (! lifecycle.get().isRegistered()) {
+      PluginLog.error(context, "The Pollfish apiKey is not registered");
       return false;
     }
 
     return true;
   }
 
-  // dispatch a Lua event to our callback (dynamic handling of properties through map)
-  private void dispatchLuaEvent(final Map<String, Object> event) {
-    if (coronaRuntimeTaskDispatcher != null) {
-      coronaRuntimeTaskDispatcher.send(new CoronaRuntimeTask() {
-        @Override
-        public void executeUsing(CoronaRuntime runtime) {
-          try {
-            LuaState L = runtime.getLuaState();
-            CoronaLua.newEvent(L, EVENT_NAME);
-            boolean hasErrorKey = false;
-
-            // add event parameters from map
-            for (String key: event.keySet()) {
-              CoronaLua.pushValue(L, event.get(key));           // push value
-              L.setField(-2, key);                              // push key
-
-              if (! hasErrorKey) {
-                hasErrorKey = key.equals(CoronaLuaEvent.ISERROR_KEY);
-              }
-            }
-
-            // add error key if not in map
-            if (! hasErrorKey) {
-              L.pushBoolean(false);
-              L.setField(-2, CoronaLuaEvent.ISERROR_KEY);
-            }
-
-            // add provider
-            L.pushString(PROVIDER_NAME);
-            L.setField(-2, CoronaLuaEvent.PROVIDER_KEY);
-
-            CoronaLua.dispatchEvent(L, coronaListener, 0);
-          }
-          catch (Exception ex) {
-            ex.printStackTrace();
-          }
+  // select where trace sections go
+  private void setTraceMode(PluginTrace.Mode mode)
+  {
+    if (mode == PluginTrace.Mode.NONE) {
+      PluginTrace.setSink(null);
+      return;
+    }
+
+    if (mode == PluginTrace.Mode.FILE) {
+      final Context context = CoronaEnvironment.getApplicationContext();
+      if (context != null) {
+        // app specific external storage can be pulled with adb, fall back to internal storage
+        File directory = context.getExternalFilesDir(null);
+        if (directory == null) {
+          directory = context.getFilesDir();
+        }
+
+        File file = new File(directory, TRACE_FILE_NAME);
+        try {
+          ChromeTraceSink sink = new ChromeTraceSink(file);
+          traceFile = sink;
+          PluginTrace.setSink(sink);
+          PluginLog.info(null, PLUGIN_NAME + ": writing trace to {}", file.getAbsolutePath());
+          return;
+        }
+        catch (IOException e) {
+          PluginLog.warning(PLUGIN_NAME, "unable to open trace file: {}", e);
+        }
+      }
+    }
+
+    PluginTrace.setSink(PluginTrace.SYSTRACE);
+  }
+
+  // open the reward journal in app-private storage, the pending rewards are replayed once it has been read
+  private void openRewardOutbox()
+  {
+    final Context context = CoronaEnvironment.getApplicationContext();
+    if (context == null) {
+      return;
+    }
+
+    final RewardOutbox outbox = new RewardOutbox(new File(context.getFilesDir(), RewardOutbox.FILE_NAME), journalExecutor);
+    openingOutbox = outbox;
+
+    // read on the journal thread, after the writes of a previous runtime, so init() does not wait for the disk
+    journalExecutor.execute(() -> {
+      final List<RewardOutbox.Reward> rewards;
+      try {
+        rewards = outbox.open();
+      }
+      catch (IOException | RuntimeException e) {
+        PluginLog.warning(PLUGIN_NAME, "unable to open reward journal: {}", e);
+        return;
+      }
+      postToPluginThread(() -> replayRewards(outbox, rewards));
+    });
+  }
+
+  // start journaling with the opened outbox and send the rewards never acknowledged (plugin thread)
+  private void replayRewards(RewardOutbox outbox, List<RewardOutbox.Reward> rewards)
+  {
+    // the runtime exited while the journal was read
+    if (openingOutbox != outbox) {
+      outbox.close();
+      return;
+    }
+    openingOutbox = null;
+    rewardOutbox = outbox;
+
+    // nothing is built if Lua has not subscribed, the rewards stay pending for the next init()
+    if (! isSubscribed(PHASE_COMPLETED)) {
+      return;
+    }
+
+    for (RewardOutbox.Reward reward : rewards) {
+      dispatchLuaEvent(PollfishEvent.obtain(PHASE_COMPLETED)
+        .set(PollfishEvent.Field.TYPE, TYPE_SURVEY)
+        .set(PollfishEvent.Field.DATA, getEventData(reward.data))
+        .set(PollfishEvent.Field.REQUEST_UUID, reward.requestUUID)
+        .set(PollfishEvent.Field.REWARD_ID, reward.id)
+        .set(PollfishEvent.Field.IS_REPLAY, true));
+    }
+  }
+
+  // dispatch a Lua event to our callback (the pooled event record is its own runtime task)
+  // or queue it for pollEvents() when the app has opted in to polling
+  private void dispatchLuaEvent(final PollfishEvent event) {
+    // not subscribed, drop it before it is numbered (the callers check first, so no event is built)
+    if (! isSubscribed((String)event.getObject(PollfishEvent.Field.PHASE))) {
+      event.recycle();
+      return;
+    }
+
+    PluginTrace.begin(TRACE_EVENT_DISPATCH);
+    try {
+      event.set(PollfishEvent.Field.SEQUENCE, stats.nextSequence())
+        .set(PollfishEvent.Field.ELAPSED_MS, stats.elapsedMs());
+      sessions.tag(event);
+
+      final SuspendBuffer buffer = suspendBuffer;
+      if ((buffer != null) && buffer.isSuspended()) {
+        buffer.add(event);
+        return;
+      }
+
+      final EventQueue queue = eventQueue;
+      if (queue != null) {
+        if (! queue.offer(event)) {
+          event.recycle();
+        }
+        return;
+      }
+
+      final CoronaRuntimeTaskDispatcher dispatcher = coronaRuntimeTaskDispatcher;
+
+      if (dispatcher != null) {
+        dispatcher.send(event.setListener(coronaListener));
+      }
+      else {
+        event.recycle();
+      }
+    }
+    finally {
+      PluginTrace.end(TRACE_EVENT_DISPATCH);
+    }
+  }
+
+  // deliver the events held while suspended, as a single runtime task (already numbered and tagged)
+  private void deliverBatch(final PollfishEvent[] events)
+  {
+    if (events.length == 0) {
+      return;
+    }
+
+    final EventQueue queue = eventQueue;
+    if (queue != null) {
+      for (PollfishEvent event : events) {
+        if (! queue.offer(event)) {
+          event.recycle();
+        }
+      }
+      return;
+    }
+
+    final CoronaRuntimeTaskDispatcher dispatcher = coronaRuntimeTaskDispatcher;
+
+    if (dispatcher != null) {
+      final int listener = coronaListener;
+      dispatcher.send(runtime -> {
+        for (PollfishEvent event : events) {
+          event.setListener(listener).executeUsing(runtime);
         }
       });
     }
+    else {
+      for (PollfishEvent event : events) {
+        event.recycle();
+      }
+    }
+  }
+
+  // true if Lua has subscribed to events of the phase
+  private static boolean isSubscribed(String phase)
+  {
+    return (subscribedPhases & PluginOptions.phaseBit(phase)) != 0;
   }
 
-  String getJSONData(SurveyInfo info)
+  // build event.data in the format selected in init (JSON string by default)
+  Object getEventData(SurveyData data)
   {
-    Map<String,Object> dataDictionary = new HashMap<>();
-    dataDictionary.put("playfulSurvey", info.getSurveyClass().endsWith("Playful"));
-    dataDictionary.put("surveyPrice", info.getSurveyCPA());
-
-    dataDictionary.put("surveyCPA", info.getSurveyCPA());
-    dataDictionary.put("surveyIR", info.getSurveyIR());
-    dataDictionary.put("surveyLOI", info.getSurveyLOI());
-    dataDictionary.put("surveyClass", info.getSurveyClass());
-    dataDictionary.put("rewardName", info.getRewardName());
-    dataDictionary.put("rewardValue", info.getRewardValue());
-
-    return new JSONObject(dataDictionary).toString();
+    return isDataTable ? data : data.toJSON();
   }
 
   // [Lua] init(listener, options)
   @SuppressWarnings("unused")
   private class Init implements NamedJavaFunction
   {
+    // function signature for error / warning messages
+    private static final String SIGNATURE = "pollfish.init(listener, options)";
+
+    private final LuaOptions.ErrorHandler optionErrors = message -> PluginLog.error(SIGNATURE, message);
+
     @Override
     public String getName()
     {
@@ -525,24 +893,16 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
     @Override
     public int invoke(LuaState luaState)
     {
-      // set function signature for error / warning messages
-      functionSignature = "pollfish.init(listener, options)";
-
       // prevent init from being called twice
       if (coronaListener != CoronaLua.REFNIL) {
-        logMsg(ERROR_MSG, "init() can only be called once");
+        PluginLog.error(SIGNATURE, "init() can only be called once");
         return 0;
       }
 
-      String apiKey = null;
-      String requestUUID = null;
-      boolean developerMode = false;
-      boolean rewardMode = false;
-
       // check number of arguments passed
       int nargs = luaState.getTop();
       if (nargs != 2) {
-        logMsg(ERROR_MSG, "2 arguments expected. got " + nargs);
+        PluginLog.error(SIGNATURE, "2 arguments expected. got {}", nargs);
         return 0;
       }
 
@@ -551,75 +911,136 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
         coronaListener = CoronaLua.newRef(luaState, 1);
       }
       else {
-        logMsg(ERROR_MSG, "listener function expected, got: " + luaState.typeName(1));
+        PluginLog.error(SIGNATURE, "listener function expected, got: {}", luaState.typeName(1));
         return 0;
       }
 
-      // check for options table
-      if (luaState.type(2) == LuaType.TABLE) {
-        for (luaState.pushNil(); luaState.next(2); luaState.pop(1)) {
-          String key = luaState.toString(-2);
-
-          if (key.equals("apiKey")) {
-            if (luaState.type(-1) == LuaType.STRING) {
-              apiKey = luaState.toString(-1);
-            }
-            else {
-              logMsg(ERROR_MSG, "options.apiKey expected (string). Got " + luaState.typeName(-1));
-              return 0;
-            }
-          }
-          else if (key.equals("developerMode")) {
-            if (luaState.type(-1) == LuaType.BOOLEAN) {
-              developerMode = luaState.toBoolean(-1);
-            }
-            else {
-              logMsg(ERROR_MSG, "options.developerMode expected (boolean). Got " + luaState.typeName(-1));
-              return 0;
-            }
-          }
-          else if (key.equals("requestUUID")) {
-            if (luaState.type(-1) == LuaType.STRING ) {
-              requestUUID = luaState.toString(-1);
-            }
-            else {
-              logMsg(ERROR_MSG, "options.requestUUID expected (string). Got " + luaState.typeName(-1));
-              return 0;
-            }
-          }
-          else if (key.equals("rewardMode")) {
-            if (luaState.type(-1) == LuaType.BOOLEAN ) {
-              rewardMode = luaState.toBoolean(-1);
-            }
-            else {
-              logMsg(ERROR_MSG, "options.rewardMode expected (boolean). Got " + luaState.typeName(-1));
-              return 0;
-            }
-          }
-          else {
-            logMsg(ERROR_MSG, "Invalid option '" + key + "'");
-            return 0;
-          }
-        }
-      }
-      else {
-        logMsg(ERROR_MSG, "options table expected. Got " + luaState.typeName(2));
+      // get the options
+      LuaOptions.Values options = PluginOptions.INIT.decode(luaState, 2, optionErrors);
+      if (options == null) {
         return 0;
       }
 
+      // validate and apply on the plugin thread, and wait: the next Lua call may read what it sets up
+      runOnPluginThread(() -> apply(options));
+
+      return 0;
+    }
+
+    // the state changes of this call, on the plugin thread
+    private void apply(LuaOptions.Values options)
+    {
+      // applies to the rest of init() already
+      PluginLog.setLevel(options.<PluginLog.Level>getChoice(PluginOptions.INIT_LOG_LEVEL));
+      setTraceMode(options.<PluginTrace.Mode>getChoice(PluginOptions.INIT_TRACE));
+
+      String apiKey = options.getString(PluginOptions.INIT_API_KEY);
+      String requestUUID = options.getString(PluginOptions.INIT_REQUEST_UUID);
+      boolean developerMode = options.getBoolean(PluginOptions.INIT_DEVELOPER_MODE);
+      boolean rewardMode = options.getBoolean(PluginOptions.INIT_REWARD_MODE);
+      boolean pollEvents = options.getBoolean(PluginOptions.INIT_POLL_EVENTS);
+      PluginOptions.DataFormat dataFormat = options.getChoice(PluginOptions.INIT_DATA_FORMAT);
+      boolean prefetch = options.getBoolean(PluginOptions.INIT_PREFETCH);
+      double prefetchTTL = options.getNumber(PluginOptions.INIT_PREFETCH_TTL);
+      boolean retry = options.has(PluginOptions.INIT_RETRY);
+      boolean useRewardOutbox = options.getBoolean(PluginOptions.INIT_REWARD_OUTBOX);
+      double suspendBufferSize = options.getNumber(PluginOptions.SUSPEND_BUFFER_SIZE);
+      SuspendBuffer.Drop suspendBufferDrop = options.getChoice(PluginOptions.SUSPEND_BUFFER_DROP);
+      long phases = options.getSet(PluginOptions.INIT_SUBSCRIBE_PHASES);
+      double retryBaseDelay = options.getNumber(PluginOptions.RETRY_BASE_DELAY);
+      double retryMultiplier = options.getNumber(PluginOptions.RETRY_MULTIPLIER);
+      double retryJitter = options.getNumber(PluginOptions.RETRY_JITTER);
+      double retryMaxAttempts = options.getNumber(PluginOptions.RETRY_MAX_ATTEMPTS);
+      double retryMaxDelay = options.getNumber(PluginOptions.RETRY_MAX_DELAY);
+      double retryNotEligibleMaxAttempts = options.getNumber(PluginOptions.RETRY_NOT_ELIGIBLE_MAX_ATTEMPTS);
+
       // validate
       if (apiKey == null) {
-        logMsg(ERROR_MSG, "options.apiKey is required");
-        return 0;
+        PluginLog.error(SIGNATURE, "options.apiKey is required");
+        return;
+      }
+
+      if (prefetchTTL <= 0) {
+        PluginLog.error(SIGNATURE, "options.prefetchTTL must be greater than 0");
+        return;
+      }
+
+      if (suspendBufferSize < 1) {
+        PluginLog.error(SIGNATURE, "options.suspendBuffer.size must be 1 or greater");
+        return;
+      }
+
+      if (retry) {
+        if ((retryBaseDelay < 0) || (retryMaxDelay < 0)) {
+          PluginLog.error(SIGNATURE, "options.retry.baseDelay and options.retry.maxDelay must not be negative");
+          return;
+        }
+        if (retryMultiplier < 1) {
+          PluginLog.error(SIGNATURE, "options.retry.multiplier must be 1 or greater");
+          return;
+        }
+        if ((retryJitter < 0) || (retryJitter > 1)) {
+          PluginLog.error(SIGNATURE, "options.retry.jitter must be between 0 and 1");
+          return;
+        }
+        if ((retryMaxAttempts < 0) || (retryNotEligibleMaxAttempts < 0)) {
+          PluginLog.error(SIGNATURE, "options.retry.maxAttempts and options.retry.notEligibleMaxAttempts must not be negative");
+          return;
+        }
       }
 
       final CoronaActivity coronaActivity = CoronaEnvironment.getCoronaActivity();
 
       // bail of no valid activity
       if (coronaActivity == null) {
-        return 0;
+        return;
+      }
+
+      // a valid init, the stats count from here
+      stats.onInit();
+      stats.start(SurveyStats.Latency.INIT);
+
+      isDataTable = (dataFormat == PluginOptions.DataFormat.TABLE);
+      subscribedPhases = phases;
+
+      // keep a survey warm once load() has been called
+      if (prefetch) {
+        prefetchScheduler = new PrefetchScheduler(pluginExecutor, new PrefetchScheduler.Host() {
+          @Override
+          public boolean isSurveyReady()
+          {
+            return lifecycle.get().isSurveyAvailable();
+          }
+
+          @Override
+          public boolean isSurveyOpen()
+          {
+            return lifecycle.get().isOnScreen();
+          }
+
+          @Override
+          public void requestSurvey()
+          {
+            processPollfishRequest(true, true);
+          }
+        }, (long)prefetchTTL);
+      }
+
+      // retry "notAvailable" and "notEligible" responses
+      if (retry) {
+        RetryEngine.Policy policy = new RetryEngine.Policy((long)retryBaseDelay, retryMultiplier, retryJitter,
+          (int)retryMaxAttempts, (long)retryMaxDelay, (int)retryNotEligibleMaxAttempts);
+
+        retryEngine = new RetryEngine(pluginExecutor, policy, () -> processPollfishRequest(true));
+      }
+
+      // queue events for pollEvents() instead of sending them to the listener
+      if (pollEvents) {
+        eventQueue = new EventQueue(EVENT_QUEUE_CAPACITY);
       }
 
+      suspendBuffer = new SuspendBuffer((int)suspendBufferSize, suspendBufferDrop, stats);
+
       // declare final values for inner class
       final String fApiKey = apiKey;
       final boolean fDeveloperMode = developerMode;
@@ -627,35 +1048,31 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
 
       final String fRequestUUID = requestUUID;
 
-      // Create a new runnable object to invoke our activity
-      Runnable runnableActivity = new Runnable() {
-        public void run() {
-          // set up callback for onResume
-          pollfishObjects.put(APIKEY_KEY, fApiKey);
-          pollfishObjects.put(PADDING_KEY, 0);
-          pollfishObjects.put(POSITION_KEY, Position.BOTTOM_RIGHT);
-          pollfishObjects.put(DEVELOPER_MODE_KEY, fDeveloperMode);
-          pollfishObjects.put(CUSTOM_MODE_KEY, false);
-          pollfishObjects.put(OFFERWALL_MODE_KEY, false);
-          pollfishObjects.put(REWARD_MODE_KEY, fRewardMode);
-          pollfishObjects.put(REQUEST_UUID_KEY, fRequestUUID);
-
-          // log plugin version to device log
-          String targetStore = getMetadata(coronaActivity, "targetedAppStore");
-          Log.i(CORONA_TAG, PLUGIN_NAME + ": " + PLUGIN_VERSION + " (SDK: " + (targetStore.startsWith("google") ? PLUGIN_GOOGLE_SDK_VERSION : PLUGIN_AMAZON_SDK_VERSION) + ")");
-
-          Map<String, Object> coronaEvent = new HashMap<>();
-          coronaEvent.put(EVENT_PHASE_KEY, PHASE_INIT);
-          dispatchLuaEvent(coronaEvent);
-
-          appIsRegistered = true;
-        }
-      };
-
-      // Run the activity on the uiThread
-      coronaActivity.runOnUiThread(runnableActivity);
+      // set up callback for onResume
+      updateConfig(builder -> builder
+        .apiKey(fApiKey)
+        .padding(0)
+        .position(Position.BOTTOM_RIGHT)
+        .developerMode(fDeveloperMode)
+        .customMode(false)
+        .offerwallMode(false)
+        .rewardMode(fRewardMode)
+        .requestUUID(fRequestUUID));
+
+      // log plugin version to device log
+      PluginLog.info(null, PLUGIN_NAME + ": " + PLUGIN_VERSION + " (SDK: {})",
+        pluginMetadata.isGooglePlay ? PLUGIN_GOOGLE_SDK_VERSION : PLUGIN_AMAZON_SDK_VERSION);
+
+      transitionTo(SurveyLifecycle.State.REGISTERED);
+      stats.stop(SurveyStats.Latency.INIT);
+      if (isSubscribed(PHASE_INIT)) {
+        dispatchLuaEvent(PollfishEvent.obtain(PHASE_INIT));
+      }
 
-      return 0;
+      // journal completed surveys, and replay the ones never acknowledged
+      if (useRewardOutbox) {
+        openRewardOutbox();
+      }
     }
   }
 
@@ -663,6 +1080,11 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
   @SuppressWarnings("unused")
   private class Load implements NamedJavaFunction
   {
+    // function signature for error / warning messages
+    private static final String SIGNATURE = "pollfish.load( [options] )";
+
+    private final LuaOptions.ErrorHandler optionErrors = message -> PluginLog.error(SIGNATURE, message);
+
     @Override
     public String getName()
     {
@@ -672,165 +1094,46 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
     @Override
     public int invoke(LuaState luaState)
     {
-      // set function signature for error / warning messages
-      functionSignature = "pollfish.load( [options] )";
-
-      if (! isSDKInitialized()) {
+      if (! isSDKInitialized(SIGNATURE)) {
         return 0;
       }
 
-      String yAlign = null;
-      String xAlign = null;
-      int padding = 0;
-      boolean customMode = false;
-      boolean offerwallMode = false;
-      boolean rewardMode = false;
-
       // check number of arguments passed
       int nargs = luaState.getTop();
       if (nargs > 1) {
-        logMsg(ERROR_MSG, "0 or 1 argument expected. got " + nargs);
+        PluginLog.error(SIGNATURE, "0 or 1 argument expected. got {}", nargs);
         return 0;
       }
 
-      // check for options table
-      if (! luaState.isNoneOrNil(1)) {
-        if (luaState.type(1) == LuaType.TABLE) {
-          for (luaState.pushNil(); luaState.next(1); luaState.pop(1)) {
-            String key = luaState.toString(-2);
-
-            if (key.equals("yAlign")) {
-              if (luaState.type(-1) == LuaType.STRING) {
-                yAlign = luaState.toString(-1);
-              }
-              else {
-                logMsg(ERROR_MSG, "options.position expected (string). Got " + luaState.typeName(-1));
-                return 0;
-              }
-            }
-            else if (key.equals("xAlign")) {
-              if (luaState.type(-1) == LuaType.STRING) {
-                xAlign = luaState.toString(-1);
-              }
-              else {
-                logMsg(ERROR_MSG, "options.align expected (string). Got " + luaState.typeName(-1));
-                return 0;
-              }
-            }
-            else if (key.equals("padding")) {
-              if (luaState.type(-1) == LuaType.NUMBER) {
-                padding = (int)luaState.toNumber(-1);
-              }
-              else {
-                logMsg(ERROR_MSG, "options.padding expected (number). Got " + luaState.typeName(-1));
-                return 0;
-              }
-            }
-            else if (key.equals("customMode")) {
-              if ( luaState.type(-1) == LuaType.BOOLEAN) {
-                customMode = luaState.toBoolean(-1);
-              }
-              else {
-                logMsg(ERROR_MSG, "options.customMode expected (boolean). Got " + luaState.typeName(-1));
-                return 0;
-              }
-            }
-            else if (key.equals("offerwallMode")) {
-              if ( luaState.type(-1) == LuaType.BOOLEAN) {
-                offerwallMode = luaState.toBoolean(-1);
-              }
-              else {
-                logMsg(ERROR_MSG, "options.offerwallMode expected (boolean). Got " + luaState.typeName(-1));
-                return 0;
-              }
-            }
-            else if (key.equals("rewardMode")) {
-              if ( luaState.type(-1) == LuaType.BOOLEAN) {
-                rewardMode = luaState.toBoolean(-1);
-              }
-              else {
-                logMsg(ERROR_MSG, "options.rewardMode expected (boolean). Got " + luaState.typeName(-1));
-                return 0;
-              }
-            }
-            else {
-              logMsg(ERROR_MSG, "Invalid option '" + key + "'");
-              return 0;
-            }
-          }
-        }
-        else {
-          logMsg(ERROR_MSG, "options table expected. Got " + luaState.typeName(2));
-          return 0;
-        }
+      // get the options (defaults if none were given)
+      LuaOptions.Values options = luaState.isNoneOrNil(1)
+        ? PluginOptions.LOAD.defaults()
+        : PluginOptions.LOAD.decode(luaState, 1, optionErrors);
+      if (options == null) {
+        return 0;
       }
 
-      // check for valid position
-      if (yAlign == null) {
-        yAlign = POS_BOTTOM;
-      }
-      else if (! validButtonPos.contains(yAlign)) {
-        logMsg(ERROR_MSG, "options.position, invalid position '" + yAlign + "'");
-        return 0;
-      }
-
-      // check for valid align
-      if (xAlign == null) {
-        xAlign = POS_RIGHT;
-      }
-      else if (! validAlignPos.contains(xAlign)) {
-        logMsg(ERROR_MSG, "options.align, invalid alignment '" + xAlign + "'");
-        return 0;
-      }
-
-      // set button position
-      Position pollfishPosition;
-
-      if (yAlign.equals(POS_TOP)) {
-        if (xAlign.equals(POS_LEFT)) {
-          pollfishPosition = Position.TOP_LEFT;
-        }
-        else { // default right
-          pollfishPosition = Position.TOP_RIGHT;
-        }
-      }
-      else if (yAlign.equals(POS_CENTER))  {
-        if (xAlign.equals(POS_LEFT)) {
-          pollfishPosition = Position.MIDDLE_LEFT;
-        }
-        else { // default right
-          pollfishPosition = Position.MIDDLE_RIGHT;
-        }
-      }
-      else { // default bottom
-        if (xAlign.equals(POS_LEFT)) {
-          pollfishPosition = Position.BOTTOM_LEFT;
-        }
-        else { // default right
-          pollfishPosition = Position.BOTTOM_RIGHT;
-        }
-      }
-
-      // save values for request function
-      pollfishObjects.put(PADDING_KEY, padding);
-      pollfishObjects.put(POSITION_KEY, pollfishPosition);
-      pollfishObjects.put(CUSTOM_MODE_KEY, customMode);
-      pollfishObjects.put(OFFERWALL_MODE_KEY, offerwallMode);
-      pollfishObjects.put(REWARD_MODE_KEY, rewardMode);
-
-      // set loaded flag
-      hasLoadedOnce = true;
-
-      processPollfishRequest();
+      // apply on the plugin thread
+      postToPluginThread(SIGNATURE, () -> apply(options));
 
       return 0;
     }
+
+    // the state changes of this call, on the plugin thread
+    private void apply(LuaOptions.Values options)
+    {
+      updateConfig(builder -> applyLoadOptions(builder, options));
+      requestSurvey(SIGNATURE);
+    }
   }
 
   // [Lua] show()
   @SuppressWarnings("unused")
   private class Show implements NamedJavaFunction
   {
+    // function signature for error / warning messages
+    private static final String SIGNATURE = "pollfish.show()";
+
     @Override
     public String getName()
     {
@@ -840,34 +1143,31 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
     @Override
     public int invoke(LuaState luaState)
     {
-      // set function signature for error / warning messages
-      functionSignature = "pollfish.show()";
-
-      if (! isSDKInitialized()) {
+      if (! isSDKInitialized(SIGNATURE)) {
         return 0;
       }
 
+      postToPluginThread(SIGNATURE, this::apply);
+
+      return 0;
+    }
+
+    // the state changes of this call, on the plugin thread
+    private void apply()
+    {
       final CoronaActivity coronaActivity = CoronaEnvironment.getCoronaActivity();
 
+      // check readiness here, only the SDK call needs the uiThread
+      if (! lifecycle.get().isSurveyAvailable()) {
+        PluginLog.warning(SIGNATURE, "Survey not ready");
+        return;
+      }
+
       // Run the activity on the uiThread
       if (coronaActivity != null) {
-        Runnable runnableActivity = new Runnable() {
-          public void run() {
-            pollfishObjects.put(SURVEY_READY_KEY, Pollfish.isPollfishPresent());
-
-            if (! (boolean)pollfishObjects.get(SURVEY_READY_KEY)) {
-              logMsg(WARNING_MSG, "Survey not ready");
-            }
-            else {
-              Pollfish.show();
-            }
-          }
-        };
-
-        coronaActivity.runOnUiThread(runnableActivity);
+        stats.start(SurveyStats.Latency.SHOW);
+        uiCommands.show(coronaActivity);
       }
-
-      return 0;
     }
   }
 
@@ -875,6 +1175,9 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
   @SuppressWarnings("unused")
   private class Hide implements NamedJavaFunction
   {
+    // function signature for error / warning messages
+    private static final String SIGNATURE = "pollfish.hide()";
+
     @Override
     public String getName()
     {
@@ -884,32 +1187,30 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
     @Override
     public int invoke(LuaState luaState)
     {
-      // set function signature for error / warning messages
-      functionSignature = "pollfish.hide()";
-
-      if (! isSDKInitialized()) {
+      if (! isSDKInitialized(SIGNATURE)) {
         return 0;
       }
 
+      postToPluginThread(SIGNATURE, this::apply);
+
+      return 0;
+    }
+
+    // the state changes of this call, on the plugin thread
+    private void apply()
+    {
       final CoronaActivity coronaActivity = CoronaEnvironment.getCoronaActivity();
 
+      // check readiness here, only the SDK call needs the uiThread
+      if (! lifecycle.get().isSurveyAvailable()) {
+        PluginLog.warning(SIGNATURE, "Survey not ready");
+        return;
+      }
+
       // Run the activity on the uiThread
       if (coronaActivity != null) {
-        Runnable runnableActivity = new Runnable() {
-          public void run() {
-            if (! (boolean)pollfishObjects.get(SURVEY_READY_KEY)) {
-              logMsg(WARNING_MSG, "Survey not ready");
-            }
-            else {
-              Pollfish.hide();
-            }
-          }
-        };
-
-        coronaActivity.runOnUiThread(runnableActivity);
+        uiCommands.hide(coronaActivity);
       }
-
-      return 0;
     }
   }
 
@@ -917,6 +1218,9 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
   @SuppressWarnings("unused")
   private class IsLoaded implements NamedJavaFunction
   {
+    // function signature for error / warning messages
+    private static final String SIGNATURE = "pollfish.isLoaded()";
+
     @Override
     public String getName()
     {
@@ -926,241 +1230,481 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
     @Override
     public int invoke(LuaState luaState)
     {
-      // set function signature for error / warning messages
-      functionSignature = "pollfish.isLoaded()";
-
-      if (! isSDKInitialized()) {
+      if (! isSDKInitialized(SIGNATURE)) {
         return 0;
       }
 
       // check if a survey is available
-      // must also check hasLoadedOnce since an app restart will falsely report isPollfishPresent as true
-      boolean isLoaded = Pollfish.isPollfishPresent() && hasLoadedOnce;
-      pollfishObjects.put(SURVEY_READY_KEY, isLoaded);
+      // the flag is kept up to date by the survey delegates, so the SDK is not queried here
+      boolean isLoaded = lifecycle.get().isSurveyAvailable();
+
+      // in developer mode, cross-check the flag against the SDK
+      if (pollfishConfig.get().developerMode) {
+        boolean isPresent = pollfish.isPollfishPresent();
+        if (isPresent != isLoaded) {
+          PluginLog.warning(SIGNATURE, "survey readiness out of sync (plugin: {}, SDK: {})", isLoaded, isPresent);
+        }
+      }
+
       luaState.pushBoolean(isLoaded);
       return 1;
     }
   }
 
-  // -------------------------------------------------------------------
-  // Delegates
-  // -------------------------------------------------------------------
+  // [Lua] pollEvents()
+  @SuppressWarnings("unused")
+  private class PollEvents implements NamedJavaFunction
+  {
+    // function signature for error / warning messages
+    private static final String SIGNATURE = "pollfish.pollEvents()";
 
-  // [Lua] setUserDetails(options)
+    @Override
+    public String getName()
+    {
+      return "pollEvents";
+    }
+
+    @Override
+    public int invoke(LuaState luaState)
+    {
+      final EventQueue queue = eventQueue;
+      if (queue == null) {
+        PluginLog.error(SIGNATURE, "pollEvents() requires pollfish.init() to be called with options.pollEvents = true");
+        return 0;
+      }
+
+      // only drain what is queued now so producers cannot keep this loop running
+      int count = queue.size();
+      luaState.newTable(count, 0);
+
+      int index = 0;
+      while (index < count) {
+        PollfishEvent event = queue.poll();
+        if (event == null) {
+          break;
+        }
+
+        try {
+          event.pushEvent(luaState);
+          luaState.rawSet(-2, ++index);
+        }
+        finally {
+          event.recycle();
+        }
+      }
+
+      luaState.pushNumber(queue.takeDroppedCount());
+      return 2;
+    }
+  }
+
+  // [Lua] getSurveyInfo()
   @SuppressWarnings("unused")
-  private class SetUserDetails implements NamedJavaFunction
+  private class GetSurveyInfo implements NamedJavaFunction
   {
     @Override
     public String getName()
     {
-      return "setUserDetails";
+      return "getSurveyInfo";
+    }
+
+    @Override
+    public int invoke(LuaState luaState)
+    {
+      // read the cached snapshots, the SDK is not involved
+      final SurveyData received = lastReceivedSurvey;
+      final SurveyData completed = lastCompletedSurvey;
+
+      luaState.newTable(0, 2);
+
+      if (received != null) {
+        received.pushTo(luaState);
+        luaState.setField(-2, "received");
+      }
+
+      if (completed != null) {
+        completed.pushTo(luaState);
+        luaState.setField(-2, "completed");
+      }
+
+      return 1;
+    }
+  }
+
+  // [Lua] getLog()
+  @SuppressWarnings("unused")
+  private class GetLog implements NamedJavaFunction
+  {
+    @Override
+    public String getName()
+    {
+      return "getLog";
+    }
+
+    @Override
+    public int invoke(LuaState luaState)
+    {
+      PluginLog.pushEntries(luaState);
+      return 1;
+    }
+  }
+
+  // [Lua] getStats()
+  @SuppressWarnings("unused")
+  private class GetStats implements NamedJavaFunction
+  {
+    @Override
+    public String getName()
+    {
+      return "getStats";
+    }
+
+    @Override
+    public int invoke(LuaState luaState)
+    {
+      stats.pushTo(luaState);
+      return 1;
+    }
+  }
+
+  // [Lua] getSessions()
+  @SuppressWarnings("unused")
+  private class GetSessions implements NamedJavaFunction
+  {
+    @Override
+    public String getName()
+    {
+      return "getSessions";
     }
 
     @Override
     public int invoke(LuaState luaState)
     {
-      // set function signature for error / warning messages
-      functionSignature = "pollfish.setUserDetails(options)";
+      sessions.pushTo(luaState);
+      return 1;
+    }
+  }
 
-      String gender = null;
-      String facebookId = null;
-      String twitterId = null;
-      String requestUUID = null;
-      double longitude = 0;
-      double latitude = 0;
-      double horizontalAccuracy = 0;
+  // [Lua] acknowledgeReward(rewardId)
+  @SuppressWarnings("unused")
+  private class AcknowledgeReward implements NamedJavaFunction
+  {
+    // function signature for error / warning messages
+    private static final String SIGNATURE = "pollfish.acknowledgeReward(rewardId)";
+
+    @Override
+    public String getName()
+    {
+      return "acknowledgeReward";
+    }
 
+    @Override
+    public int invoke(LuaState luaState)
+    {
+      if (luaState.type(1) != LuaType.NUMBER) {
+        PluginLog.error(SIGNATURE, "rewardId (number) expected, got: {}", luaState.typeName(1));
+        return 0;
+      }
+
+      final long rewardId = (long)luaState.toNumber(1);
+
+      postToPluginThread(SIGNATURE, () -> {
+        final RewardOutbox outbox = rewardOutbox;
+        if (outbox == null) {
+          PluginLog.error(SIGNATURE, "acknowledgeReward() requires pollfish.init() to be called with options.rewardOutbox = true");
+        }
+        else if (! outbox.acknowledge(rewardId)) {
+          PluginLog.warning(SIGNATURE, "unknown or already acknowledged rewardId: {}", rewardId);
+        }
+      });
+
+      return 0;
+    }
+  }
+
+  // [Lua] configure(options)
+  @SuppressWarnings("unused")
+  private class Configure implements NamedJavaFunction
+  {
+    // function signature for error / warning messages
+    private static final String SIGNATURE = "pollfish.configure(options)";
+
+    private final LuaOptions.ErrorHandler optionErrors = message -> PluginLog.error(SIGNATURE, message);
+
+    @Override
+    public String getName()
+    {
+      return "configure";
+    }
+
+    @Override
+    public int invoke(LuaState luaState)
+    {
       // check if SDK ready for method calls
-      if (! isSDKInitialized()) {
+      if (! isSDKInitialized(SIGNATURE)) {
         return 0;
       }
 
       // check number of arguments passed
       int nargs = luaState.getTop();
       if (nargs != 1) {
-        logMsg(ERROR_MSG, "missing options table.");
+        PluginLog.error(SIGNATURE, "missing options table.");
         return 0;
       }
 
-      // check for options table
-      if (luaState.type(1) == LuaType.TABLE) {
-        // get the options
-        for (luaState.pushNil(); luaState.next(1); luaState.pop(1)) {
-          String key = luaState.toString(-2);
+      // get all the options, nothing is applied if any of them is invalid
+      LuaOptions.Values options = PluginOptions.CONFIGURE.decode(luaState, 1, optionErrors);
+      if (options == null) {
+        return 0;
+      }
 
-          if (key.equals("age" )) {
-            // NOP
-            // remains here for backwards compatibility
-            // TODO: remove in a later release
-          }
-          else if (key.equals("gender" )) {
-            if (luaState.type(-1) == LuaType.STRING) {
-              gender = luaState.toString(-1);
-            }
-            else {
-              logMsg(ERROR_MSG, "options.gender expected (string). Got " + luaState.typeName(-1));
-              return 0;
-            }
-          }
-          else if (key.equals("ageGroup" )) {
-            // NOP
-            // remains here for backwards compatibility
-            // TODO: remove in a later release
-          }
-          else if (key.equals("facebookId" )) {
-            if (luaState.type(-1) == LuaType.STRING) {
-              facebookId = luaState.toString(-1);
-            }
-            else {
-              logMsg(ERROR_MSG, "options.facebookId expected (string). Got " + luaState.typeName(-1));
-              return 0;
-            }
-          }
-          else if (key.equals("twitterId" )) {
-            if (luaState.type(-1) == LuaType.STRING) {
-              twitterId = luaState.toString(-1);
-            }
-            else {
-              logMsg(ERROR_MSG, "options.twitterId expected (string). Got " + luaState.typeName(-1));
-              return 0;
-            }
-          }
-          else if (key.equals("requestUUID")) {
-            if (luaState.type(-1) == LuaType.STRING ) {
-              requestUUID = luaState.toString(-1);
-            }
-            else {
-              logMsg(ERROR_MSG, "options.requestUUID expected (string). Got " + luaState.typeName(-1));
-              return 0;
-            }
-          }
-          else if (key.equals("customData" )) {
-            // NOP
-            // remains here for backwards compatibility
-            // TODO: remove in a later release
-          }
-          else if (key.equals("location" )) {
-            if (luaState.type(-1) == LuaType.TABLE) {
-              // get location
-              for (luaState.pushNil(); luaState.next(-2); luaState.pop(1)) {
-                String locationKey = luaState.toString(-2);
-
-                if (locationKey.equals("longitude")) {
-                  if (luaState.type(-1) == LuaType.NUMBER) {
-                    longitude = luaState.toNumber(-1);
-                  }
-                  else {
-                    logMsg(ERROR_MSG, "options.location.longitude expected (number). Got " + luaState.typeName(-1));
-                    return 0;
-                  }
-                }
-                else if (locationKey.equals("latitude")) {
-                  if (luaState.type(-1) == LuaType.NUMBER) {
-                    latitude = luaState.toNumber(-1);
-                  }
-                  else {
-                    logMsg(ERROR_MSG, "options.location.latitude expected (number). Got " + luaState.typeName(-1));
-                    return 0;
-                  }
-                }
-                else if (locationKey.equals("horizontalAccuracy")) {
-                  if (luaState.type(-1) == LuaType.NUMBER) {
-                    horizontalAccuracy = luaState.toNumber(-1);
-                  }
-                  else {
-                    logMsg(ERROR_MSG, "options.location.horizontalAccuracy expected (number). Got " + luaState.typeName(-1));
-                    return 0;
-                  }
-                }
-                else {
-                  logMsg(ERROR_MSG, "option.location invalid option '" + locationKey + "'");
-                  return 0;
-                }
-              }
-            }
-            else {
-              logMsg(ERROR_MSG, "options.location table expected. Got " + luaState.typeName(-1));
-              return 0;
-            }
-          }
-          else {
-            logMsg(ERROR_MSG, "Invalid option '" + key + "'");
-            return 0;
-          }
-        }
+      final LuaOptions.Values user = options.getTable(PluginOptions.CONFIGURE_USER);
+      final LuaOptions.Values load = options.getTable(PluginOptions.CONFIGURE_LOAD);
 
-        // define user attributes dictionary
-        UserProperties.Builder userAttributes = new UserProperties.Builder();
+      // options.requestUUID wins over options.user.requestUUID
+      String requestUUID = options.getString(PluginOptions.CONFIGURE_REQUEST_UUID);
+      if ((requestUUID == null) && (user != null)) {
+        requestUUID = user.getString(PluginOptions.USER_REQUEST_UUID);
+      }
 
-        // validate gender
-        if (gender != null) {
-          if (! validGender.contains(gender)) {
-            logMsg(ERROR_MSG, "options.gender invalid gender '" + gender + "'. Valid values: 'male', 'female', 'other'");
-            return 0;
-          }
-          if("male".equals(gender)) userAttributes.gender(UserProperties.Gender.MALE);
-          if("female".equals(gender)) userAttributes.gender(UserProperties.Gender.FEMALE);
-          if("other".equals(gender)) userAttributes.gender(UserProperties.Gender.OTHER);
+      final String fRequestUUID = requestUUID;
+      final PollfishConfig.UserAttributes fUserAttributes = (user != null) ? userAttributesOf(user) : null;
 
-        }
+      postToPluginThread(SIGNATURE, () -> apply(fRequestUUID, fUserAttributes, load));
 
-        // validate facebookId
-        if (facebookId != null) {
-          //userAttributes.setFacebookId(facebookId);
-        }
-
-        // validate twitterId
-        if (twitterId != null) {
-          //userAttributes.setTwitterId(twitterId);
-        }
+      return 0;
+    }
 
-        // set request UUID
+    // the state changes of this call, on the plugin thread
+    private void apply(String requestUUID, PollfishConfig.UserAttributes userAttributes, LuaOptions.Values load)
+    {
+      // one config update, so no request is ever made with only part of it
+      updateConfig(builder -> {
         if (requestUUID != null) {
-          pollfishObjects.put(REQUEST_UUID_KEY, requestUUID);
+          builder.requestUUID(requestUUID);
         }
+        if (userAttributes != null) {
+          builder.userAttributes(userAttributes);
+        }
+        if (load != null) {
+          applyLoadOptions(builder, load);
+        }
+      });
+
+      // without load options the new config is used by the next request, as with setUserDetails()
+      if (load != null) {
+        requestSurvey(SIGNATURE);
+      }
+    }
+  }
+
+  // [Lua] subscribe(options)
+  @SuppressWarnings("unused")
+  private class Subscribe implements NamedJavaFunction
+  {
+    // function signature for error / warning messages
+    private static final String SIGNATURE = "pollfish.subscribe(options)";
 
-        // location automatically set on Android if developer adds location-permissions to the manifest
+    private final LuaOptions.ErrorHandler optionErrors = message -> PluginLog.error(SIGNATURE, message);
+
+    @Override
+    public String getName()
+    {
+      return "subscribe";
+    }
 
+    @Override
+    public int invoke(LuaState luaState)
+    {
+      // check if SDK ready for method calls
+      if (! isSDKInitialized(SIGNATURE)) {
+        return 0;
+      }
 
-        pollfishObjects.put(USER_ATTRIBUTES_KEY, userAttributes.build());
+      // check number of arguments passed
+      int nargs = luaState.getTop();
+      if (nargs != 1) {
+        PluginLog.error(SIGNATURE, "missing options table.");
+        return 0;
       }
-      else {
-        logMsg(ERROR_MSG, "options table expected. Got " + luaState.typeName(1));
+
+      // get the options
+      LuaOptions.Values options = PluginOptions.SUBSCRIBE.decode(luaState, 1, optionErrors);
+      if (options == null) {
         return 0;
       }
 
+      // events already numbered or waiting in the suspend buffer are still sent
+      final long phases = options.getSet(PluginOptions.SUBSCRIBE_PHASES);
+      postToPluginThread(SIGNATURE, () -> subscribedPhases = phases);
+
       return 0;
     }
   }
 
+  // [Lua] setUserDetails(options)
+  @SuppressWarnings("unused")
+  private class SetUserDetails implements NamedJavaFunction
+  {
+    // function signature for error / warning messages
+    private static final String SIGNATURE = "pollfish.setUserDetails(options)";
+
+    private final LuaOptions.ErrorHandler optionErrors = message -> PluginLog.error(SIGNATURE, message);
+
+    @Override
+    public String getName()
+    {
+      return "setUserDetails";
+    }
+
+    @Override
+    public int invoke(LuaState luaState)
+    {
+      // check if SDK ready for method calls
+      if (! isSDKInitialized(SIGNATURE)) {
+        return 0;
+      }
+
+      // check number of arguments passed
+      int nargs = luaState.getTop();
+      if (nargs != 1) {
+        PluginLog.error(SIGNATURE, "missing options table.");
+        return 0;
+      }
+
+      // get the options
+      LuaOptions.Values options = PluginOptions.USER.decode(luaState, 1, optionErrors);
+      if (options == null) {
+        return 0;
+      }
+
+      // set request UUID and user attributes in a single update
+      final String fRequestUUID = options.getString(PluginOptions.USER_REQUEST_UUID);
+      final PollfishConfig.UserAttributes fUserAttributes = userAttributesOf(options);
+
+      postToPluginThread(SIGNATURE, () -> updateConfig(builder -> {
+        if (fRequestUUID != null) {
+          builder.requestUUID(fRequestUUID);
+        }
+        builder.userAttributes(fUserAttributes);
+      }));
+
+      return 0;
+    }
+  }
+
+  // -------------------------------------------------------------------
+  // Delegates
+  // -------------------------------------------------------------------
+
   public class CoronaSurveyReceivedDelegate implements PollfishSurveyReceivedListener
   {
     @Override
-    public void onPollfishSurveyReceived(@Nullable SurveyInfo surveyInfo) {
-      // send Corona Lua event
-      Map<String, Object> coronaEvent = new HashMap<>();
-      coronaEvent.put(EVENT_PHASE_KEY, PHASE_LOADED);
-      coronaEvent.put(EVENT_TYPE_KEY, TYPE_SURVEY);
-      coronaEvent.put(EVENT_DATA_KEY, getJSONData(surveyInfo));
-      dispatchLuaEvent(coronaEvent);
+    public void onPollfishSurveyReceived(@Nullable final SurveyInfo surveyInfo)
+    {
+      postToPluginThread(() -> surveyReceived(surveyInfo));
+    }
+
+    // on the plugin thread
+    private void surveyReceived(@Nullable SurveyInfo surveyInfo)
+    {
+      PluginTrace.begin(TRACE_SDK_RECEIVED);
+      try {
+        PluginLog.debug(null, "survey received");
+
+        stats.count(SurveyStats.Counter.FILLS);
+        stats.stop(SurveyStats.Latency.LOAD);
+        sessions.onReceived(stats.elapsedMs());
+
+        // keep a snapshot for getSurveyInfo()
+        final SurveyData data = SurveyData.from(surveyInfo);
+        lastReceivedSurvey = data;
+
+        // report how many attempts it took and start over
+        final RetryEngine retry = retryEngine;
+        final int attempt = (retry != null) ? retry.getAttempt() : 0;
+        if (retry != null) {
+          retry.reset();
+        }
+
+        // send Corona Lua event, nothing is built if Lua has not subscribed
+        if (isSubscribed(PHASE_LOADED)) {
+          final PollfishEvent event = PollfishEvent.obtain(PHASE_LOADED)
+            .set(PollfishEvent.Field.TYPE, TYPE_SURVEY)
+            .set(PollfishEvent.Field.DATA, getEventData(data));
+
+          if (retry != null) {
+            event.set(PollfishEvent.Field.ATTEMPT, attempt);
+          }
+
+          dispatchLuaEvent(event);
+        }
 
-      pollfishObjects.put(SURVEY_READY_KEY, true);
+        // a new survey while one is on screen is refused, the panel decides what comes next
+        transitionTo(SurveyLifecycle.State.READY);
+
+        final PrefetchScheduler scheduler = prefetchScheduler;
+        if (scheduler != null) {
+          scheduler.onSurveyReceived();
+        }
+      }
+      finally {
+        PluginTrace.end(TRACE_SDK_RECEIVED);
+      }
     }
   }
 
   public class CoronaSurveyCompletedDelegate implements PollfishSurveyCompletedListener
   {
     @Override
-    public void onPollfishSurveyCompleted(SurveyInfo info)
+    public void onPollfishSurveyCompleted(final SurveyInfo info)
+    {
+      postToPluginThread(() -> surveyCompleted(info));
+    }
+
+    // on the plugin thread
+    private void surveyCompleted(SurveyInfo info)
     {
-      // send Corona Lua event
-      Map<String, Object> coronaEvent = new HashMap<>();
-      coronaEvent.put(EVENT_PHASE_KEY, PHASE_COMPLETED);
-      coronaEvent.put(EVENT_TYPE_KEY, TYPE_SURVEY);
-      coronaEvent.put(EVENT_DATA_KEY, getJSONData(info));
-      dispatchLuaEvent(coronaEvent);
+      PluginTrace.begin(TRACE_SDK_COMPLETED);
+      try {
+        PluginLog.debug(null, "survey completed");
+
+        stats.count(SurveyStats.Counter.COMPLETIONS);
+        stats.stop(SurveyStats.Latency.COMPLETE);
+        sessions.onCompleted(stats.elapsedMs());
+
+        // keep a snapshot for getSurveyInfo()
+        final SurveyData data = SurveyData.from(info);
+        lastCompletedSurvey = data;
+
+        // keep the reward until Lua acknowledges it, whether or not Lua has subscribed to completed events
+        // (it is replayed on the next init())
+        final RewardOutbox outbox = rewardOutbox;
+        final long rewardId = (outbox != null) ? outbox.add(sessions.displayedRequestUUID(), data) : 0;
+
+        // send Corona Lua event, nothing is built if Lua has not subscribed
+        if (isSubscribed(PHASE_COMPLETED)) {
+          final PollfishEvent event = PollfishEvent.obtain(PHASE_COMPLETED)
+            .set(PollfishEvent.Field.TYPE, TYPE_SURVEY)
+            .set(PollfishEvent.Field.DATA, getEventData(data));
+
+          if (outbox != null) {
+            event.set(PollfishEvent.Field.REWARD_ID, rewardId);
+          }
+
+          dispatchLuaEvent(event);
+        }
 
-      pollfishObjects.put(SURVEY_READY_KEY, false);
+        finishSurvey(SurveyLifecycle.State.COMPLETED);
+
+        final PrefetchScheduler scheduler = prefetchScheduler;
+        if (scheduler != null) {
+          scheduler.onSurveyGone();
+        }
+      }
+      finally {
+        PluginTrace.end(TRACE_SDK_COMPLETED);
+      }
     }
   }
 
@@ -1169,15 +1713,58 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
     @Override
     public void onPollfishSurveyNotAvailable()
     {
-      // send Corona Lua event
-      Map<String, Object> coronaEvent = new HashMap<>();
-      coronaEvent.put(EVENT_PHASE_KEY, PHASE_FAILED);
-      coronaEvent.put(EVENT_TYPE_KEY, TYPE_SURVEY);
-      coronaEvent.put(CoronaLuaEvent.RESPONSE_KEY, RESPONSE_NOT_AVAILABLE);
-      coronaEvent.put(CoronaLuaEvent.ISERROR_KEY, true);
-      dispatchLuaEvent(coronaEvent);
+      postToPluginThread(() -> surveyNotAvailable());
+    }
+
+    // on the plugin thread
+    private void surveyNotAvailable()
+    {
+      PluginTrace.begin(TRACE_SDK_NOT_AVAILABLE);
+      try {
+        PluginLog.debug(null, "survey not available");
+
+        stats.count(SurveyStats.Counter.NOT_AVAILABLE);
+        stats.cancel(SurveyStats.Latency.LOAD);
+        sessions.onFailed(SurveySessions.Outcome.NOT_AVAILABLE);
+
+        // the survey being refreshed is still ready, Lua is not told about the failed refresh
+        if (lifecycle.transition(SurveyLifecycle.State.REFRESHING, SurveyLifecycle.State.READY)) {
+          PluginLog.debug(null, "background refresh failed, keeping the ready survey");
+          return;
+        }
+
+        // schedule a retry if the policy allows it
+        final RetryEngine retry = retryEngine;
+        final int attempt = (retry != null) ? retry.getAttempt() : 0;
+        final long nextRetryMs = (retry != null) ? retry.onFailure(false) : RetryEngine.NO_RETRY;
+
+        // send Corona Lua event, nothing is built if Lua has not subscribed
+        if (isSubscribed(PHASE_FAILED)) {
+          final PollfishEvent event = PollfishEvent.obtain(PHASE_FAILED)
+            .set(PollfishEvent.Field.TYPE, TYPE_SURVEY)
+            .set(PollfishEvent.Field.RESPONSE, RESPONSE_NOT_AVAILABLE)
+            .set(PollfishEvent.Field.IS_ERROR, true);
 
-      pollfishObjects.put(SURVEY_READY_KEY, false);
+          if (retry != null) {
+            event.set(PollfishEvent.Field.ATTEMPT, attempt);
+          }
+          if (nextRetryMs != RetryEngine.NO_RETRY) {
+            event.set(PollfishEvent.Field.NEXT_RETRY_MS, nextRetryMs);
+          }
+
+          dispatchLuaEvent(event);
+        }
+
+        finishSurvey(SurveyLifecycle.State.FAILED);
+
+        final PrefetchScheduler scheduler = prefetchScheduler;
+        if (scheduler != null) {
+          scheduler.onSurveyGone();
+        }
+      }
+      finally {
+        PluginTrace.end(TRACE_SDK_NOT_AVAILABLE);
+      }
     }
   }
 
@@ -1186,15 +1773,58 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
     @Override
     public void onUserNotEligible()
     {
-      // send Corona Lua event
-      Map<String, Object> coronaEvent = new HashMap<>();
-      coronaEvent.put(EVENT_PHASE_KEY, PHASE_FAILED);
-      coronaEvent.put(EVENT_TYPE_KEY, TYPE_SURVEY);
-      coronaEvent.put(CoronaLuaEvent.RESPONSE_KEY, RESPONSE_NOT_ELIGIBLE);
-      coronaEvent.put(CoronaLuaEvent.ISERROR_KEY, true);
-      dispatchLuaEvent(coronaEvent);
+      postToPluginThread(() -> userNotEligible());
+    }
+
+    // on the plugin thread
+    private void userNotEligible()
+    {
+      PluginTrace.begin(TRACE_SDK_NOT_ELIGIBLE);
+      try {
+        PluginLog.debug(null, "user not eligible");
+
+        stats.count(SurveyStats.Counter.NOT_ELIGIBLE);
+        stats.cancel(SurveyStats.Latency.LOAD);
+        sessions.onFailed(SurveySessions.Outcome.NOT_ELIGIBLE);
+
+        // the survey being refreshed is still ready, Lua is not told about the failed refresh
+        if (lifecycle.transition(SurveyLifecycle.State.REFRESHING, SurveyLifecycle.State.READY)) {
+          PluginLog.debug(null, "background refresh failed, keeping the ready survey");
+          return;
+        }
+
+        // schedule a retry if the policy allows it
+        final RetryEngine retry = retryEngine;
+        final int attempt = (retry != null) ? retry.getAttempt() : 0;
+        final long nextRetryMs = (retry != null) ? retry.onFailure(true) : RetryEngine.NO_RETRY;
+
+        // send Corona Lua event, nothing is built if Lua has not subscribed
+        if (isSubscribed(PHASE_FAILED)) {
+          final PollfishEvent event = PollfishEvent.obtain(PHASE_FAILED)
+            .set(PollfishEvent.Field.TYPE, TYPE_SURVEY)
+            .set(PollfishEvent.Field.RESPONSE, RESPONSE_NOT_ELIGIBLE)
+            .set(PollfishEvent.Field.IS_ERROR, true);
+
+          if (retry != null) {
+            event.set(PollfishEvent.Field.ATTEMPT, attempt);
+          }
+          if (nextRetryMs != RetryEngine.NO_RETRY) {
+            event.set(PollfishEvent.Field.NEXT_RETRY_MS, nextRetryMs);
+          }
+
+          dispatchLuaEvent(event);
+        }
 
-      pollfishObjects.put(SURVEY_READY_KEY, false);
+        finishSurvey(SurveyLifecycle.State.FAILED);
+
+        final PrefetchScheduler scheduler = prefetchScheduler;
+        if (scheduler != null) {
+          scheduler.onSurveyGone();
+        }
+      }
+      finally {
+        PluginTrace.end(TRACE_SDK_NOT_ELIGIBLE);
+      }
     }
   }
 
@@ -1203,14 +1833,32 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
     @Override
     public void onPollfishOpened()
     {
-      // send Corona Lua event
-      Map<String, Object> coronaEvent = new HashMap<>();
-      coronaEvent.put(EVENT_PHASE_KEY, PHASE_DISPLAYED);
-      coronaEvent.put(EVENT_TYPE_KEY, TYPE_SURVEY);
-      dispatchLuaEvent(coronaEvent);
+      postToPluginThread(() -> opened());
+    }
+
+    // on the plugin thread
+    private void opened()
+    {
+      PluginTrace.begin(TRACE_SDK_OPENED);
+      try {
+        PluginLog.debug(null, "survey opened");
+
+        stats.stop(SurveyStats.Latency.SHOW);
+        stats.start(SurveyStats.Latency.COMPLETE);
+        sessions.onOpened(stats.elapsedMs());
+
+        // send Corona Lua event
+        if (isSubscribed(PHASE_DISPLAYED)) {
+          dispatchLuaEvent(PollfishEvent.obtain(PHASE_DISPLAYED)
+            .set(PollfishEvent.Field.TYPE, TYPE_SURVEY));
+        }
 
-      // set the flag (used in closed event)
-      isSurveyOpened = true;
+        // the survey is on screen until closed, any answer from now on is about it
+        transitionTo(SurveyLifecycle.State.DISPLAYED);
+      }
+      finally {
+        PluginTrace.end(TRACE_SDK_OPENED);
+      }
     }
   }
 
@@ -1219,16 +1867,34 @@ public class LuaLoader implements JavaFunction, CoronaRuntimeListener
     @Override
     public void onPollfishClosed()
     {
-      // This is needed as a 'closed' event is also sent by the SDK even if only the button is hidden
-      // A 'closed' event should only be sent when a survey is closed.
-      if (isSurveyOpened) {
-        // send Corona Lua event
-        Map<String, Object> coronaEvent = new HashMap<>();
-        coronaEvent.put(EVENT_PHASE_KEY, PHASE_CLOSED);
-        coronaEvent.put(EVENT_TYPE_KEY, TYPE_SURVEY);
-        dispatchLuaEvent(coronaEvent);
+      postToPluginThread(() -> closed());
+    }
 
-        isSurveyOpened = false;
+    // on the plugin thread
+    private void closed()
+    {
+      PluginTrace.begin(TRACE_SDK_CLOSED);
+      try {
+        PluginLog.debug(null, "survey closed");
+
+        // completed is reported before closed, a survey closed now was abandoned
+        stats.cancel(SurveyStats.Latency.COMPLETE);
+
+        // This is needed as a 'closed' event is also sent by the SDK even if only the button is hidden
+        // A 'closed' event is only sent once per opened survey, whether it is still on screen
+        // or was completed / screened out while on screen: only the first close leaves the panel state.
+        if (lifecycle.close() != null) {
+          // send Corona Lua event (tagged with the session pinned when it was opened)
+          if (isSubscribed(PHASE_CLOSED)) {
+            dispatchLuaEvent(PollfishEvent.obtain(PHASE_CLOSED)
+              .set(PollfishEvent.Field.TYPE, TYPE_SURVEY));
+          }
+
+          sessions.onClosed(stats.elapsedMs());
+        }
+      }
+      finally {
+        PluginTrace.end(TRACE_SDK_CLOSED);
       }
     }
   }
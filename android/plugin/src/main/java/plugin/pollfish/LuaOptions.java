@@ -0,0 +1,485 @@
+//
+// LuaOptions.java
+// Pollfish Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import com.naef.jnlua.LuaState;
+import com.naef.jnlua.LuaType;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+
+/**
+ * Decoder for a Lua options table, compiled once from a declarative schema.
+ * <p/>
+ * Each option is declared with its key, Lua type and default, and enum options with the enum
+ * that holds their valid values (the Lua value is the lower case constant name). An array of
+ * such names is decoded to a bit mask of the constants' ordinals. Nested tables are declared the
+ * same way, or decoded with a schema of their own so one function can take the options of
+ * another. Decoded values are stored in primitive arrays indexed by the slot
+ * given to each option when it was declared, and errors are reported through an
+ * {@link ErrorHandler} so the decoder does not depend on how the plugin logs.
+ * <p/>
+ * A table is decoded in one pass over its entries: each key is looked up in the options of its
+ * level, built once with the schema, so the work is in the number of keys given and an invalid
+ * key is reported as soon as it is met.
+ */
+final class LuaOptions
+{
+  // receives the first decoding error
+  interface ErrorHandler
+  {
+    void onError(String message);
+  }
+
+  private enum Type
+  {
+    STRING,
+    NUMBER,
+    BOOLEAN,
+    CHOICE,
+    SET,          // array of choices, decoded to a bit mask
+    TABLE,
+    SCHEMA,       // nested table decoded with another schema
+    IGNORED       // accepted for backwards compatibility, value not read
+  }
+
+  // a declared option, used as the handle to read its decoded value
+  static final class Option
+  {
+    private final Type type;
+    private final String path;                  // e.g. "options.location.latitude"
+    private String label;                       // the name in error messages, the path unless relabelled
+    private final int id;                       // bit in the present mask
+    private final int slot;                     // index in the value array of its type
+    private final Enum<?>[] domain;             // CHOICE and SET only
+    private final HashMap<String, Integer> choices;
+    private final String validValues;
+    private final Level nested;                 // TABLE only
+    private final LuaOptions schema;            // SCHEMA only
+
+    private Option(Type type, String path, int id, int slot, Enum<?>[] domain, Level nested, LuaOptions schema)
+    {
+      this.type = type;
+      this.path = path;
+      this.label = path;
+      this.id = id;
+      this.slot = slot;
+      this.domain = domain;
+      this.nested = nested;
+      this.schema = schema;
+
+      if (domain != null) {
+        choices = new HashMap<>();
+        StringBuilder builder = new StringBuilder();
+        for (Enum<?> value : domain) {
+          String name = value.name().toLowerCase(Locale.US);
+          choices.put(name, value.ordinal());
+          builder.append(builder.length() == 0 ? "'" : ", '").append(name).append("'");
+        }
+        validValues = builder.toString();
+      }
+      else {
+        choices = null;
+        validValues = null;
+      }
+    }
+  }
+
+  // the options of one table
+  private static final class Level
+  {
+    final String path;
+    final boolean isRoot;
+    final HashMap<String, Option> options = new HashMap<>();
+
+    Level(String path, boolean isRoot)
+    {
+      this.path = path;
+      this.isRoot = isRoot;
+    }
+  }
+
+  private final Level root;
+  private final String[] defaultStrings;
+  private final double[] defaultNumbers;
+  private final boolean[] defaultBooleans;
+  private final int[] defaultChoices;
+  private final long[] defaultSets;
+  private final int tables;
+  private final Values defaults;
+
+  private LuaOptions(Builder builder)
+  {
+    root = builder.level;
+    defaultStrings = new String[builder.state.strings];
+    defaultNumbers = Arrays.copyOf(builder.state.numberDefaults, builder.state.numbers);
+    defaultBooleans = Arrays.copyOf(builder.state.booleanDefaults, builder.state.booleans);
+    defaultChoices = Arrays.copyOf(builder.state.choiceDefaults, builder.state.choices);
+    defaultSets = Arrays.copyOf(builder.state.setDefaults, builder.state.sets);
+    tables = builder.state.tables;
+    defaults = new Values(this);
+  }
+
+  static Builder builder()
+  {
+    return new Builder();
+  }
+
+  // the default values, for a call made without an options table (shared, values are read-only)
+  Values defaults()
+  {
+    return defaults;
+  }
+
+  // decode the table at the given stack index, returns null after reporting an error
+  Values decode(LuaState luaState, int index, ErrorHandler errors)
+  {
+    if (luaState.type(index) != LuaType.TABLE) {
+      errors.onError(root.path + " table expected. Got " + luaState.typeName(index));
+      return null;
+    }
+
+    Values values = new Values(this);
+    int top = luaState.getTop();
+
+    if (! decodeTable(luaState, luaState.absIndex(index), root, values, errors)) {
+      luaState.setTop(top);
+      return null;
+    }
+
+    return values;
+  }
+
+  private static boolean decodeTable(LuaState luaState, int table, Level level, Values values, ErrorHandler errors)
+  {
+    for (luaState.pushNil(); luaState.next(table); luaState.pop(1)) {
+      // only look up string keys, toString() would convert a number key in place and break next()
+      Option option = (luaState.type(-2) == LuaType.STRING) ? level.options.get(luaState.toString(-2)) : null;
+
+      if (option == null) {
+        String key = (luaState.type(-2) == LuaType.STRING) ? luaState.toString(-2) : luaState.typeName(-2);
+        if (level.isRoot) {
+          errors.onError("Invalid option '" + key + "'");
+        }
+        else {
+          errors.onError(level.path + " invalid option '" + key + "'");
+        }
+        return false;
+      }
+
+      if (! decodeValue(luaState, option, values, errors)) {
+        return false;
+      }
+
+      values.present |= 1L << option.id;
+    }
+
+    return true;
+  }
+
+  // decode the value on the top of the stack
+  private static boolean decodeValue(LuaState luaState, Option option, Values values, ErrorHandler errors)
+  {
+    LuaType type = luaState.type(-1);
+
+    switch (option.type) {
+      case STRING:
+        if (type != LuaType.STRING) {
+          return typeError(luaState, option, "string", errors);
+        }
+        values.strings[option.slot] = luaState.toString(-1);
+        break;
+
+      case NUMBER:
+        if (type != LuaType.NUMBER) {
+          return typeError(luaState, option, "number", errors);
+        }
+        values.numbers[option.slot] = luaState.toNumber(-1);
+        break;
+
+      case BOOLEAN:
+        if (type != LuaType.BOOLEAN) {
+          return typeError(luaState, option, "boolean", errors);
+        }
+        values.booleans[option.slot] = luaState.toBoolean(-1);
+        break;
+
+      case CHOICE:
+        if (type != LuaType.STRING) {
+          return typeError(luaState, option, "string", errors);
+        }
+        String name = luaState.toString(-1);
+        Integer ordinal = option.choices.get(name);
+        if (ordinal == null) {
+          errors.onError(option.label + ", invalid value '" + name + "'. Valid values: " + option.validValues);
+          return false;
+        }
+        values.choices[option.slot] = ordinal;
+        break;
+
+      case SET:
+        if (type != LuaType.TABLE) {
+          return typeError(luaState, option, "array of strings", errors);
+        }
+        long mask = 0;
+        int array = luaState.getTop();
+        for (luaState.pushNil(); luaState.next(array); luaState.pop(1)) {
+          if ((luaState.type(-2) != LuaType.NUMBER) || (luaState.type(-1) != LuaType.STRING)) {
+            return typeError(luaState, option, "array of strings", errors);
+          }
+          String element = luaState.toString(-1);
+          Integer bit = option.choices.get(element);
+          if (bit == null) {
+            errors.onError(option.label + ", invalid value '" + element + "'. Valid values: " + option.validValues);
+            return false;
+          }
+          mask |= 1L << bit;
+        }
+        values.sets[option.slot] = mask;
+        break;
+
+      case TABLE:
+        if (type != LuaType.TABLE) {
+          errors.onError(option.label + " table expected. Got " + luaState.typeName(-1));
+          return false;
+        }
+        if (! decodeTable(luaState, luaState.getTop(), option.nested, values, errors)) {
+          return false;
+        }
+        break;
+
+      case SCHEMA:
+        if (type != LuaType.TABLE) {
+          errors.onError(option.label + " table expected. Got " + luaState.typeName(-1));
+          return false;
+        }
+        final String path = option.label;
+        Values nested = option.schema.decode(luaState, -1, message -> errors.onError(path + ": " + message));
+        if (nested == null) {
+          return false;
+        }
+        values.tables[option.slot] = nested;
+        break;
+
+      case IGNORED:
+        // NOP
+        break;
+    }
+
+    return true;
+  }
+
+  private static boolean typeError(LuaState luaState, Option option, String expected, ErrorHandler errors)
+  {
+    errors.onError(option.label + " expected (" + expected + "). Got " + luaState.typeName(-1));
+    return false;
+  }
+
+  // the decoded values of one call, defaults for the options that were not given
+  static final class Values
+  {
+    private long present = 0;
+    private final String[] strings;
+    private final double[] numbers;
+    private final boolean[] booleans;
+    private final int[] choices;
+    private final long[] sets;
+    private final Values[] tables;
+
+    // only the value arrays are copied, the getters return the stored values as they are
+    private Values(LuaOptions schema)
+    {
+      strings = schema.defaultStrings.clone();
+      numbers = schema.defaultNumbers.clone();
+      booleans = schema.defaultBooleans.clone();
+      choices = schema.defaultChoices.clone();
+      sets = schema.defaultSets.clone();
+      tables = new Values[schema.tables];
+    }
+
+    // true if the option was given in the table
+    boolean has(Option option)
+    {
+      return (present & (1L << option.id)) != 0;
+    }
+
+    String getString(Option option)
+    {
+      return strings[option.slot];
+    }
+
+    double getNumber(Option option)
+    {
+      return numbers[option.slot];
+    }
+
+    boolean getBoolean(Option option)
+    {
+      return booleans[option.slot];
+    }
+
+    // the enum constant of a choice option, or null if not given and without default
+    @SuppressWarnings("unchecked")
+    <E extends Enum<E>> E getChoice(Option option)
+    {
+      int ordinal = choices[option.slot];
+      return (ordinal < 0) ? null : (E)option.domain[ordinal];
+    }
+
+    // bit mask of a set option, bit n set for the enum constant with ordinal n
+    long getSet(Option option)
+    {
+      return sets[option.slot];
+    }
+
+    // the decoded values of a table with its own schema, or null if it was not given
+    Values getTable(Option option)
+    {
+      return tables[option.slot];
+    }
+  }
+
+  // slot counters and defaults, shared by a builder and its nested table builders
+  private static final class BuildState
+  {
+    int ids = 0;
+    int strings = 0;
+    int numbers = 0;
+    int booleans = 0;
+    int choices = 0;
+    int sets = 0;
+    int tables = 0;
+    double[] numberDefaults = new double[8];
+    boolean[] booleanDefaults = new boolean[8];
+    int[] choiceDefaults = new int[8];
+    long[] setDefaults = new long[8];
+  }
+
+  static final class Builder
+  {
+    private final BuildState state;
+    private final Level level;
+
+    private Builder()
+    {
+      this(new BuildState(), new Level("options", true));
+    }
+
+    private Builder(BuildState state, Level level)
+    {
+      this.state = state;
+      this.level = level;
+    }
+
+    Option string(String key)
+    {
+      return add(key, Type.STRING, state.strings++, null, null, null);
+    }
+
+    Option number(String key, double defaultValue)
+    {
+      int slot = state.numbers++;
+      if (slot == state.numberDefaults.length) {
+        state.numberDefaults = Arrays.copyOf(state.numberDefaults, slot * 2);
+      }
+      state.numberDefaults[slot] = defaultValue;
+      return add(key, Type.NUMBER, slot, null, null, null);
+    }
+
+    Option bool(String key, boolean defaultValue)
+    {
+      int slot = state.booleans++;
+      if (slot == state.booleanDefaults.length) {
+        state.booleanDefaults = Arrays.copyOf(state.booleanDefaults, slot * 2);
+      }
+      state.booleanDefaults[slot] = defaultValue;
+      return add(key, Type.BOOLEAN, slot, null, null, null);
+    }
+
+    // a string restricted to the lower case names of the enum constants, defaultValue may be null
+    <E extends Enum<E>> Option choice(String key, Class<E> domain, E defaultValue)
+    {
+      int slot = state.choices++;
+      if (slot == state.choiceDefaults.length) {
+        state.choiceDefaults = Arrays.copyOf(state.choiceDefaults, slot * 2);
+      }
+      state.choiceDefaults[slot] = (defaultValue == null) ? -1 : defaultValue.ordinal();
+      return add(key, Type.CHOICE, slot, domain.getEnumConstants(), null, null);
+    }
+
+    // an array of lower case names of the enum constants, read as a bit mask of their ordinals
+    <E extends Enum<E>> Option set(String key, Class<E> domain, long defaultMask)
+    {
+      if (domain.getEnumConstants().length > Long.SIZE) {
+        throw new IllegalArgumentException(domain + " has too many constants for a set");
+      }
+
+      int slot = state.sets++;
+      if (slot == state.setDefaults.length) {
+        state.setDefaults = Arrays.copyOf(state.setDefaults, slot * 2);
+      }
+      state.setDefaults[slot] = defaultMask;
+      return add(key, Type.SET, slot, domain.getEnumConstants(), null, null);
+    }
+
+    // a nested table, its options are declared with in()
+    Option table(String key)
+    {
+      return add(key, Type.TABLE, 0, null, new Level(level.path + "." + key, false), null);
+    }
+
+    // a nested table decoded with another schema, read with Values.getTable()
+    Option table(String key, LuaOptions schema)
+    {
+      return add(key, Type.SCHEMA, state.tables++, null, null, schema);
+    }
+
+    // a key that is accepted with any value and otherwise ignored
+    void ignore(String key)
+    {
+      add(key, Type.IGNORED, 0, null, null, null);
+    }
+
+    // name the option differently in error messages, e.g. as it was named in earlier releases
+    void label(Option option, String label)
+    {
+      option.label = label;
+    }
+
+    // the builder for the options of a nested table
+    Builder in(Option table)
+    {
+      if (table.nested == null) {
+        throw new IllegalArgumentException(table.path + " is not a table");
+      }
+      return new Builder(state, table.nested);
+    }
+
+    LuaOptions build()
+    {
+      return new LuaOptions(this);
+    }
+
+    private Option add(String key, Type type, int slot, Enum<?>[] domain, Level nested, LuaOptions schema)
+    {
+      if (level.options.containsKey(key)) {
+        throw new IllegalArgumentException(level.path + "." + key + " declared twice");
+      }
+      if (state.ids == Long.SIZE) {
+        throw new IllegalStateException("too many options");
+      }
+
+      Option option = new Option(type, level.path + "." + key, state.ids++, slot, domain, nested, schema);
+      level.options.put(key, option);
+      return option;
+    }
+  }
+}
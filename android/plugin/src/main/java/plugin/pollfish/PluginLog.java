@@ -0,0 +1,228 @@
+//
+// PluginLog.java
+// Pollfish Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import android.util.Log;
+
+import com.naef.jnlua.LuaState;
+
+import java.util.Locale;
+
+/**
+ * Level-gated plugin log, with the most recent entries kept in memory for pollfish.getLog().
+ * <p/>
+ * Messages are templates with "{}" placeholders that are only filled in once the level check has
+ * passed, so a disabled level costs a comparison. Numbers are passed as long, not boxed, so a
+ * disabled level does not allocate either. Every entry names the Lua function it was logged
+ * for (passed by the caller, nothing is shared between calls) and is written to the device log and
+ * to a fixed-size ring buffer.
+ */
+final class PluginLog
+{
+  enum Level
+  {
+    DEBUG("DEBUG: "),
+    INFO(""),
+    WARNING("WARNING: "),
+    ERROR("ERROR: "),
+    NONE("");
+
+    final String prefix;
+    final String luaName;
+
+    Level(String prefix)
+    {
+      this.prefix = prefix;
+      this.luaName = name().toLowerCase(Locale.US);
+    }
+  }
+
+  static final Level DEFAULT_LEVEL = Level.INFO;
+  static final int BUFFER_SIZE = 64;
+
+  private static volatile Level level = DEFAULT_LEVEL;
+
+  // ring buffer, guarded by its own lock
+  private static final Object lock = new Object();
+  private static final long[] times = new long[BUFFER_SIZE];
+  private static final Level[] levels = new Level[BUFFER_SIZE];
+  private static final String[] messages = new String[BUFFER_SIZE];
+  private static int head = 0;                  // next slot to write
+  private static int count = 0;
+
+  private PluginLog()
+  {
+  }
+
+  static void setLevel(Level newLevel)
+  {
+    level = newLevel;
+  }
+
+  static boolean isEnabled(Level messageLevel)
+  {
+    return messageLevel.ordinal() >= level.ordinal() && messageLevel != Level.NONE;
+  }
+
+  static void debug(String context, String message)
+  {
+    if (isEnabled(Level.DEBUG)) {
+      write(Level.DEBUG, context, message);
+    }
+  }
+
+  static void debug(String context, String template, Object arg)
+  {
+    if (isEnabled(Level.DEBUG)) {
+      write(Level.DEBUG, context, format(template, arg, null, 1));
+    }
+  }
+
+  static void debug(String context, String template, long arg)
+  {
+    if (isEnabled(Level.DEBUG)) {
+      write(Level.DEBUG, context, format(template, arg, null, 1));
+    }
+  }
+
+  static void info(String context, String template, Object arg)
+  {
+    if (isEnabled(Level.INFO)) {
+      write(Level.INFO, context, format(template, arg, null, 1));
+    }
+  }
+
+  static void info(String context, String template, long arg)
+  {
+    if (isEnabled(Level.INFO)) {
+      write(Level.INFO, context, format(template, arg, null, 1));
+    }
+  }
+
+  static void warning(String context, String message)
+  {
+    if (isEnabled(Level.WARNING)) {
+      write(Level.WARNING, context, message);
+    }
+  }
+
+  static void warning(String context, String template, Object arg)
+  {
+    if (isEnabled(Level.WARNING)) {
+      write(Level.WARNING, context, format(template, arg, null, 1));
+    }
+  }
+
+  static void warning(String context, String template, long arg)
+  {
+    if (isEnabled(Level.WARNING)) {
+      write(Level.WARNING, context, format(template, arg, null, 1));
+    }
+  }
+
+  static void warning(String context, String template, Object arg1, Object arg2)
+  {
+    if (isEnabled(Level.WARNING)) {
+      write(Level.WARNING, context, format(template, arg1, arg2, 2));
+    }
+  }
+
+  static void error(String context, String message)
+  {
+    if (isEnabled(Level.ERROR)) {
+      write(Level.ERROR, context, message);
+    }
+  }
+
+  static void error(String context, String template, Object arg)
+  {
+    if (isEnabled(Level.ERROR)) {
+      write(Level.ERROR, context, format(template, arg, null, 1));
+    }
+  }
+
+  static void error(String context, String template, long arg)
+  {
+    if (isEnabled(Level.ERROR)) {
+      write(Level.ERROR, context, format(template, arg, null, 1));
+    }
+  }
+
+  // push the buffered entries as an array of { time, level, message } tables, oldest first
+  static void pushEntries(LuaState luaState)
+  {
+    synchronized (lock) {
+      luaState.newTable(count, 0);
+
+      int first = (head - count + BUFFER_SIZE) % BUFFER_SIZE;
+      for (int i = 0; i < count; i++) {
+        int slot = (first + i) % BUFFER_SIZE;
+
+        luaState.newTable(0, 3);
+        luaState.pushNumber(times[slot]);
+        luaState.setField(-2, "time");
+        luaState.pushString(levels[slot].luaName);
+        luaState.setField(-2, "level");
+        luaState.pushString(messages[slot]);
+        luaState.setField(-2, "message");
+
+        luaState.rawSet(-2, i + 1);
+      }
+    }
+  }
+
+  private static void write(Level messageLevel, String context, String message)
+  {
+    String line = (context != null) ? context + ", " + message : message;
+
+    switch (messageLevel) {
+      case DEBUG:
+        Log.d(LuaLoader.CORONA_TAG, messageLevel.prefix + line);
+        break;
+      case WARNING:
+        Log.w(LuaLoader.CORONA_TAG, messageLevel.prefix + line);
+        break;
+      case ERROR:
+        Log.e(LuaLoader.CORONA_TAG, messageLevel.prefix + line);
+        break;
+      default:
+        Log.i(LuaLoader.CORONA_TAG, messageLevel.prefix + line);
+        break;
+    }
+
+    synchronized (lock) {
+      times[head] = System.currentTimeMillis();
+      levels[head] = messageLevel;
+      messages[head] = line;
+      head = (head + 1) % BUFFER_SIZE;
+      if (count < BUFFER_SIZE) {
+        count++;
+      }
+    }
+  }
+
+  // replace the "{}" placeholders in order
+  private static String format(String template, Object arg1, Object arg2, int argCount)
+  {
+    StringBuilder builder = new StringBuilder(template.length() + 32);
+    int start = 0;
+
+    for (int arg = 0; arg < argCount; arg++) {
+      int index = template.indexOf("{}", start);
+      if (index < 0) {
+        break;
+      }
+      builder.append(template, start, index).append(arg == 0 ? arg1 : arg2);
+      start = index + 2;
+    }
+
+    return builder.append(template, start, template.length()).toString();
+  }
+}
@@ -0,0 +1,85 @@
+//
+// PluginMetadata.java
+// Pollfish Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.Bundle;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the manifest &lt;meta-data&gt; the plugin uses.
+ * <p/>
+ * The manifest is read once when the plugin is loaded (a binder call, done off the UI thread),
+ * after which every lookup is a field read. Besides the targeted app store, every entry whose
+ * name starts with "plugin.pollfish" is kept for plugin specific settings.
+ */
+final class PluginMetadata
+{
+  static final PluginMetadata EMPTY = new PluginMetadata(null, Collections.<String, String>emptyMap());
+
+  private static final String TARGETED_APP_STORE_KEY = "targetedAppStore";
+  private static final String PLUGIN_KEY_PREFIX = LuaLoader.PLUGIN_NAME;
+  private static final String GOOGLE_STORE_PREFIX = "google";
+
+  final String targetedAppStore;      // empty when not set
+  final boolean isGooglePlay;         // selects the Google Play or the universal (Amazon) SDK flavour
+  private final Map<String, String> pluginValues;
+
+  private PluginMetadata(String targetedAppStore, Map<String, String> pluginValues)
+  {
+    this.targetedAppStore = (targetedAppStore != null) ? targetedAppStore : "";
+    this.pluginValues = pluginValues;
+
+    // the Google Play flavour is the one this plugin is built against
+    isGooglePlay = this.targetedAppStore.isEmpty() || this.targetedAppStore.startsWith(GOOGLE_STORE_PREFIX);
+  }
+
+  // read the manifest, must not be called on the UI thread
+  static PluginMetadata load(Context context)
+  {
+    Bundle metaData = null;
+
+    try {
+      ApplicationInfo appInfo = context.getPackageManager().getApplicationInfo(
+        context.getPackageName(), PackageManager.GET_META_DATA);
+      metaData = appInfo.metaData;
+    }
+    catch (PackageManager.NameNotFoundException e) {
+      // if we can't find it in the manifest, use the defaults
+    }
+
+    if (metaData == null) {
+      return EMPTY;
+    }
+
+    Map<String, String> pluginValues = new HashMap<>();
+    for (String key : metaData.keySet()) {
+      if (key.startsWith(PLUGIN_KEY_PREFIX)) {
+        Object value = metaData.get(key);
+        if (value != null) {
+          pluginValues.put(key, value.toString());
+        }
+      }
+    }
+
+    return new PluginMetadata(metaData.getString(TARGETED_APP_STORE_KEY), Collections.unmodifiableMap(pluginValues));
+  }
+
+  // value of a plugin specific <meta-data> entry, or null
+  String getString(String name)
+  {
+    return pluginValues.get(name);
+  }
+}
@@ -0,0 +1,216 @@
+//
+// PluginOptions.java
+// Pollfish Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import com.pollfish.builder.Position;
+import com.pollfish.builder.UserProperties;
+
+/**
+ * Option schemas of the Lua API functions.
+ * <p/>
+ * Each schema is compiled once when the class is loaded. New options are added by declaring
+ * them here and reading them in the Lua function with the returned handle.
+ */
+final class PluginOptions
+{
+  // options.yAlign
+  enum VerticalAlign
+  {
+    TOP,
+    BOTTOM,
+    CENTER
+  }
+
+  // options.xAlign
+  enum HorizontalAlign
+  {
+    LEFT,
+    RIGHT
+  }
+
+  // options.gender
+  enum Gender
+  {
+    MALE(UserProperties.Gender.MALE),
+    FEMALE(UserProperties.Gender.FEMALE),
+    OTHER(UserProperties.Gender.OTHER);
+
+    final UserProperties.Gender sdkGender;
+
+    Gender(UserProperties.Gender sdkGender)
+    {
+      this.sdkGender = sdkGender;
+    }
+  }
+
+  // options.dataFormat
+  enum DataFormat
+  {
+    JSON,
+    TABLE
+  }
+
+  // options.subscribe.phases, one constant per event phase
+  enum Phase
+  {
+    INIT(LuaLoader.PHASE_INIT),
+    LOADED(LuaLoader.PHASE_LOADED),
+    DISPLAYED(LuaLoader.PHASE_DISPLAYED),
+    CLOSED(LuaLoader.PHASE_CLOSED),
+    COMPLETED(LuaLoader.PHASE_COMPLETED),
+    FAILED(LuaLoader.PHASE_FAILED);
+
+    final String phase;
+
+    Phase(String phase)
+    {
+      this.phase = phase;
+    }
+  }
+
+  private static final Phase[] PHASES = Phase.values();
+
+  // subscription mask with every phase
+  static final long ALL_PHASES = (1L << PHASES.length) - 1;
+
+  // -------------------------------------------------------------------
+  // init(listener, options)
+  // -------------------------------------------------------------------
+
+  private static final LuaOptions.Builder init = LuaOptions.builder();
+
+  static final LuaOptions.Option INIT_API_KEY = init.string("apiKey");
+  static final LuaOptions.Option INIT_DEVELOPER_MODE = init.bool("developerMode", false);
+  static final LuaOptions.Option INIT_REQUEST_UUID = init.string("requestUUID");
+  static final LuaOptions.Option INIT_REWARD_MODE = init.bool("rewardMode", false);
+  static final LuaOptions.Option INIT_POLL_EVENTS = init.bool("pollEvents", false);
+  static final LuaOptions.Option INIT_DATA_FORMAT = init.choice("dataFormat", DataFormat.class, DataFormat.JSON);
+  static final LuaOptions.Option INIT_PREFETCH = init.bool("prefetch", false);
+  static final LuaOptions.Option INIT_PREFETCH_TTL = init.number("prefetchTTL", PrefetchScheduler.DEFAULT_TTL_MS);
+  static final LuaOptions.Option INIT_RETRY = init.table("retry");
+  static final LuaOptions.Option INIT_REWARD_OUTBOX = init.bool("rewardOutbox", false);
+  static final LuaOptions.Option INIT_SUSPEND_BUFFER = init.table("suspendBuffer");
+  static final LuaOptions.Option INIT_SUBSCRIBE = init.table("subscribe");
+  static final LuaOptions.Option INIT_LOG_LEVEL = init.choice("logLevel", PluginLog.Level.class, PluginLog.DEFAULT_LEVEL);
+  static final LuaOptions.Option INIT_TRACE = init.choice("trace", PluginTrace.Mode.class, PluginTrace.Mode.SYSTRACE);
+
+  static final LuaOptions.Option RETRY_BASE_DELAY = init.in(INIT_RETRY).number("baseDelay", RetryEngine.DEFAULT_BASE_DELAY_MS);
+  static final LuaOptions.Option RETRY_MULTIPLIER = init.in(INIT_RETRY).number("multiplier", RetryEngine.DEFAULT_MULTIPLIER);
+  static final LuaOptions.Option RETRY_JITTER = init.in(INIT_RETRY).number("jitter", RetryEngine.DEFAULT_JITTER);
+  static final LuaOptions.Option RETRY_MAX_ATTEMPTS = init.in(INIT_RETRY).number("maxAttempts", RetryEngine.DEFAULT_MAX_ATTEMPTS);
+  static final LuaOptions.Option RETRY_MAX_DELAY = init.in(INIT_RETRY).number("maxDelay", RetryEngine.DEFAULT_MAX_DELAY_MS);
+  static final LuaOptions.Option RETRY_NOT_ELIGIBLE_MAX_ATTEMPTS = init.in(INIT_RETRY).number("notEligibleMaxAttempts", RetryEngine.DEFAULT_NOT_ELIGIBLE_MAX_ATTEMPTS);
+
+  static final LuaOptions.Option SUSPEND_BUFFER_SIZE = init.in(INIT_SUSPEND_BUFFER).number("size", SuspendBuffer.DEFAULT_SIZE);
+  static final LuaOptions.Option SUSPEND_BUFFER_DROP = init.in(INIT_SUSPEND_BUFFER).choice("drop", SuspendBuffer.Drop.class, SuspendBuffer.Drop.OLDEST);
+
+  static final LuaOptions.Option INIT_SUBSCRIBE_PHASES = init.in(INIT_SUBSCRIBE).set("phases", Phase.class, ALL_PHASES);
+
+  static final LuaOptions INIT = init.build();
+
+  // -------------------------------------------------------------------
+  // load( [options] )
+  // -------------------------------------------------------------------
+
+  private static final LuaOptions.Builder load = LuaOptions.builder();
+
+  static final LuaOptions.Option LOAD_Y_ALIGN = load.choice("yAlign", VerticalAlign.class, VerticalAlign.BOTTOM);
+  static final LuaOptions.Option LOAD_X_ALIGN = load.choice("xAlign", HorizontalAlign.class, HorizontalAlign.RIGHT);
+  static final LuaOptions.Option LOAD_PADDING = load.number("padding", 0);
+  static final LuaOptions.Option LOAD_CUSTOM_MODE = load.bool("customMode", false);
+  static final LuaOptions.Option LOAD_OFFERWALL_MODE = load.bool("offerwallMode", false);
+  static final LuaOptions.Option LOAD_REWARD_MODE = load.bool("rewardMode", false);
+
+  static {
+    // error messages keep the names of earlier releases
+    load.label(LOAD_Y_ALIGN, "options.position");
+    load.label(LOAD_X_ALIGN, "options.align");
+  }
+
+  static final LuaOptions LOAD = load.build();
+
+  // -------------------------------------------------------------------
+  // setUserDetails(options)
+  // -------------------------------------------------------------------
+
+  private static final LuaOptions.Builder user = LuaOptions.builder();
+
+  static final LuaOptions.Option USER_GENDER = user.choice("gender", Gender.class, null);
+  static final LuaOptions.Option USER_FACEBOOK_ID = user.string("facebookId");
+  static final LuaOptions.Option USER_TWITTER_ID = user.string("twitterId");
+  static final LuaOptions.Option USER_REQUEST_UUID = user.string("requestUUID");
+  static final LuaOptions.Option USER_LOCATION = user.table("location");
+
+  static final LuaOptions.Option LOCATION_LONGITUDE = user.in(USER_LOCATION).number("longitude", 0);
+  static final LuaOptions.Option LOCATION_LATITUDE = user.in(USER_LOCATION).number("latitude", 0);
+  static final LuaOptions.Option LOCATION_HORIZONTAL_ACCURACY = user.in(USER_LOCATION).number("horizontalAccuracy", 0);
+
+  static {
+    // remain here for backwards compatibility
+    // TODO: remove in a later release
+    user.ignore("age");
+    user.ignore("ageGroup");
+    user.ignore("customData");
+  }
+
+  static final LuaOptions USER = user.build();
+
+  // -------------------------------------------------------------------
+  // subscribe(options)
+  // -------------------------------------------------------------------
+
+  private static final LuaOptions.Builder subscribe = LuaOptions.builder();
+
+  static final LuaOptions.Option SUBSCRIBE_PHASES = subscribe.set("phases", Phase.class, ALL_PHASES);
+
+  static final LuaOptions SUBSCRIBE = subscribe.build();
+
+  // -------------------------------------------------------------------
+  // configure(options)
+  // -------------------------------------------------------------------
+
+  private static final LuaOptions.Builder configure = LuaOptions.builder();
+
+  static final LuaOptions.Option CONFIGURE_REQUEST_UUID = configure.string("requestUUID");
+  static final LuaOptions.Option CONFIGURE_USER = configure.table("user", USER);
+  static final LuaOptions.Option CONFIGURE_LOAD = configure.table("load", LOAD);
+
+  static final LuaOptions CONFIGURE = configure.build();
+
+  private PluginOptions()
+  {
+  }
+
+  // bit of an event phase in a subscription mask, 0 for an unknown phase
+  static long phaseBit(String phase)
+  {
+    for (Phase value : PHASES) {
+      if (value.phase.equals(phase)) {
+        return 1L << value.ordinal();
+      }
+    }
+    return 0;
+  }
+
+  // Pollfish indicator position for the given alignment
+  static Position positionOf(VerticalAlign yAlign, HorizontalAlign xAlign)
+  {
+    boolean isLeft = (xAlign == HorizontalAlign.LEFT);
+
+    switch (yAlign) {
+      case TOP:
+        return isLeft ? Position.TOP_LEFT : Position.TOP_RIGHT;
+      case CENTER:
+        return isLeft ? Position.MIDDLE_LEFT : Position.MIDDLE_RIGHT;
+      default:
+        return isLeft ? Position.BOTTOM_LEFT : Position.BOTTOM_RIGHT;
+    }
+  }
+}
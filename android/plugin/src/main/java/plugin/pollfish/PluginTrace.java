@@ -0,0 +1,143 @@
+//
+// PluginTrace.java
+// Pollfish Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import android.os.Trace;
+
+import com.naef.jnlua.LuaState;
+import com.naef.jnlua.NamedJavaFunction;
+
+/**
+ * Trace sections around every boundary the plugin crosses: Lua calls into Java, hops to the UI
+ * thread, SDK callbacks and events sent back to the Corona runtime.
+ * <p/>
+ * Sections go to a pluggable {@link Sink}. By default this is android.os.Trace, so the sections
+ * show up in systrace and Perfetto captures; {@link ChromeTraceSink} writes them to a Chrome
+ * trace-event file instead. Section names are constants, so tracing allocates nothing on the
+ * default sink. Every begin must be matched by an end on the same thread and sink, so the
+ * wrappers end a section on the sink it was begun on, even if the sink is replaced meanwhile
+ * (init() does that from inside its own section).
+ */
+final class PluginTrace
+{
+  // receives the trace sections
+  interface Sink
+  {
+    void begin(String name);
+    void end(String name);
+  }
+
+  enum Mode
+  {
+    SYSTRACE,
+    FILE,
+    NONE
+  }
+
+  // sections in android.os.Trace (no-ops unless the app is being traced)
+  static final Sink SYSTRACE = new Sink() {
+    @Override
+    public void begin(String name)
+    {
+      Trace.beginSection(name);
+    }
+
+    @Override
+    public void end(String name)
+    {
+      Trace.endSection();
+    }
+  };
+
+  private static volatile Sink sink = SYSTRACE;
+
+  private PluginTrace()
+  {
+  }
+
+  // install a sink (null disables tracing), returns the previous one
+  static Sink setSink(Sink newSink)
+  {
+    Sink previous = sink;
+    sink = newSink;
+    return previous;
+  }
+
+  static void begin(String name)
+  {
+    final Sink current = sink;
+    if (current != null) {
+      current.begin(name);
+    }
+  }
+
+  static void end(String name)
+  {
+    final Sink current = sink;
+    if (current != null) {
+      current.end(name);
+    }
+  }
+
+  // a runnable that runs the given one inside a trace section
+  static Runnable wrap(final String name, final Runnable runnable)
+  {
+    return new Runnable() {
+      @Override
+      public void run()
+      {
+        final Sink current = sink;
+        if (current == null) {
+          runnable.run();
+          return;
+        }
+
+        current.begin(name);
+        try {
+          runnable.run();
+        }
+        finally {
+          current.end(name);
+        }
+      }
+    };
+  }
+
+  // a Lua function that runs the given one inside a section named after it
+  static NamedJavaFunction wrap(final NamedJavaFunction function)
+  {
+    final String name = LuaLoader.PROVIDER_NAME + "." + function.getName();
+
+    return new NamedJavaFunction() {
+      @Override
+      public String getName()
+      {
+        return function.getName();
+      }
+
+      @Override
+      public int invoke(LuaState luaState)
+      {
+        final Sink current = sink;
+        if (current == null) {
+          return function.invoke(luaState);
+        }
+
+        current.begin(name);
+        try {
+          return function.invoke(luaState);
+        }
+        finally {
+          current.end(name);
+        }
+      }
+    };
+  }
+}
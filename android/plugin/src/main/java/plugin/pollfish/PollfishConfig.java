@@ -0,0 +1,200 @@
+//
+// PollfishConfig.java
+// Pollfish Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import com.pollfish.builder.Position;
+
+import java.util.Objects;
+
+/**
+ * Immutable snapshot of the values used to build the Pollfish request parameters.
+ * <p/>
+ * A snapshot is never modified once it has been published. Changes are made by copying it
+ * through a {@link Builder}, which produces a new snapshot with the next version number.
+ */
+final class PollfishConfig
+{
+  static final PollfishConfig EMPTY = new Builder().build();
+
+  final long version;
+  final String apiKey;
+  final String requestUUID;
+  final Position position;
+  final int padding;
+  final boolean developerMode;
+  final boolean customMode;
+  final boolean offerwallMode;
+  final boolean rewardMode;
+  final UserAttributes userAttributes;   // null until setUserDetails() or configure() sets them
+  final int fingerprint;                 // hash of the request parameters, excluding the version
+
+  private PollfishConfig(Builder builder)
+  {
+    version = builder.version;
+    apiKey = builder.apiKey;
+    requestUUID = builder.requestUUID;
+    position = builder.position;
+    padding = builder.padding;
+    developerMode = builder.developerMode;
+    customMode = builder.customMode;
+    offerwallMode = builder.offerwallMode;
+    rewardMode = builder.rewardMode;
+    userAttributes = builder.userAttributes;
+
+    fingerprint = Objects.hash(apiKey, requestUUID, position, padding, developerMode, customMode, offerwallMode,
+      rewardMode, userAttributes);
+  }
+
+  // true if both snapshots would produce the same Pollfish request, regardless of version
+  boolean hasSameRequestAs(PollfishConfig other)
+  {
+    if (other == this) {
+      return true;
+    }
+
+    return (other != null)
+      && (fingerprint == other.fingerprint)
+      && (padding == other.padding)
+      && (developerMode == other.developerMode)
+      && (customMode == other.customMode)
+      && (offerwallMode == other.offerwallMode)
+      && (rewardMode == other.rewardMode)
+      && (position == other.position)
+      && Objects.equals(userAttributes, other.userAttributes)
+      && Objects.equals(apiKey, other.apiKey)
+      && Objects.equals(requestUUID, other.requestUUID);
+  }
+
+  // the decoded user attributes, compared by value so the same details given again make the same request
+  static final class UserAttributes
+  {
+    final PluginOptions.Gender gender;   // null if not given
+
+    UserAttributes(PluginOptions.Gender gender)
+    {
+      this.gender = gender;
+    }
+
+    @Override
+    public boolean equals(Object other)
+    {
+      return (other instanceof UserAttributes) && (gender == ((UserAttributes)other).gender);
+    }
+
+    @Override
+    public int hashCode()
+    {
+      return Objects.hashCode(gender);
+    }
+  }
+
+  // start a copy of this snapshot, the copy gets the next version number
+  Builder buildUpon()
+  {
+    return new Builder(this);
+  }
+
+  // a change applied to a copy of the current snapshot (may be run more than once under contention)
+  interface Update
+  {
+    void applyTo(Builder builder);
+  }
+
+  static final class Builder
+  {
+    private long version = 0;
+    private String apiKey = null;
+    private String requestUUID = null;
+    private Position position = Position.BOTTOM_RIGHT;
+    private int padding = 0;
+    private boolean developerMode = false;
+    private boolean customMode = false;
+    private boolean offerwallMode = false;
+    private boolean rewardMode = false;
+    private UserAttributes userAttributes = null;
+
+    Builder()
+    {
+    }
+
+    private Builder(PollfishConfig config)
+    {
+      version = config.version + 1;
+      apiKey = config.apiKey;
+      requestUUID = config.requestUUID;
+      position = config.position;
+      padding = config.padding;
+      developerMode = config.developerMode;
+      customMode = config.customMode;
+      offerwallMode = config.offerwallMode;
+      rewardMode = config.rewardMode;
+      userAttributes = config.userAttributes;
+    }
+
+    Builder apiKey(String apiKey)
+    {
+      this.apiKey = apiKey;
+      return this;
+    }
+
+    Builder requestUUID(String requestUUID)
+    {
+      this.requestUUID = requestUUID;
+      return this;
+    }
+
+    Builder position(Position position)
+    {
+      this.position = position;
+      return this;
+    }
+
+    Builder padding(int padding)
+    {
+      this.padding = padding;
+      return this;
+    }
+
+    Builder developerMode(boolean developerMode)
+    {
+      this.developerMode = developerMode;
+      return this;
+    }
+
+    Builder customMode(boolean customMode)
+    {
+      this.customMode = customMode;
+      return this;
+    }
+
+    Builder offerwallMode(boolean offerwallMode)
+    {
+      this.offerwallMode = offerwallMode;
+      return this;
+    }
+
+    Builder rewardMode(boolean rewardMode)
+    {
+      this.rewardMode = rewardMode;
+      return this;
+    }
+
+    Builder userAttributes(UserAttributes userAttributes)
+    {
+      this.userAttributes = userAttributes;
+      return this;
+    }
+
+    PollfishConfig build()
+    {
+      return new PollfishConfig(this);
+    }
+  }
+}
@@ -0,0 +1,223 @@
+//
+// PollfishEvent.java
+// Pollfish Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import com.naef.jnlua.LuaState;
+
+import com.ansca.corona.CoronaLua;
+import com.ansca.corona.CoronaLuaEvent;
+import com.ansca.corona.CoronaRuntime;
+import com.ansca.corona.CoronaRuntimeTask;
+
+/**
+ * Fixed-shape record for an "adsRequest" event.
+ * <p/>
+ * Every property the plugin can send is described by a {@link Field} and stored in a slot indexed
+ * by the field's ordinal, so filling in and pushing an event needs no map or key comparisons.
+ * Records are pooled and double as the runtime task that delivers them, so once the pool is warm
+ * no Java objects are allocated per event.
+ */
+final class PollfishEvent implements CoronaRuntimeTask
+{
+  enum Kind
+  {
+    STRING,
+    BOOLEAN,
+    NUMBER,
+    OBJECT
+  }
+
+  enum Field
+  {
+    PHASE("phase", Kind.STRING),
+    TYPE("type", Kind.STRING),
+    RESPONSE(CoronaLuaEvent.RESPONSE_KEY, Kind.STRING),
+    IS_ERROR(CoronaLuaEvent.ISERROR_KEY, Kind.BOOLEAN),
+    DATA("data", Kind.OBJECT),
+    ATTEMPT("attempt", Kind.NUMBER),
+    NEXT_RETRY_MS("nextRetryMs", Kind.NUMBER),
+    SESSION_ID("sessionId", Kind.NUMBER),
+    REQUEST_UUID("requestUUID", Kind.STRING),
+    REWARD_ID("rewardId", Kind.NUMBER),
+    IS_REPLAY("isReplay", Kind.BOOLEAN),
+    SEQUENCE("sequence", Kind.NUMBER),
+    ELAPSED_MS("elapsedMs", Kind.NUMBER);
+
+    final String key;
+    final Kind kind;
+
+    Field(String key, Kind kind)
+    {
+      this.key = key;
+      this.kind = kind;
+    }
+  }
+
+  private static final Field[] FIELDS = Field.values();   // cached, values() returns a new array on every call
+  private static final int POOL_SIZE = 16;
+  private static final String TRACE_DELIVER = "event.deliver";
+
+  private static final PollfishEvent[] pool = new PollfishEvent[POOL_SIZE];
+  private static int poolCount = 0;
+
+  private final Object[] objects = new Object[FIELDS.length];
+  private final long[] numbers = new long[FIELDS.length];
+  private long fieldMask = 0;                              // bit set for every field that has a value
+  private int listener = CoronaLua.REFNIL;
+
+  private PollfishEvent()
+  {
+  }
+
+  // get a cleared record from the pool (allocates only while the pool is warming up)
+  static PollfishEvent obtain(String phase)
+  {
+    PollfishEvent event = null;
+
+    synchronized (pool) {
+      if (poolCount > 0) {
+        event = pool[--poolCount];
+        pool[poolCount] = null;
+      }
+    }
+
+    if (event == null) {
+      event = new PollfishEvent();
+    }
+
+    return event.set(Field.PHASE, phase);
+  }
+
+  // clear the record and return it to the pool
+  void recycle()
+  {
+    for (int i = 0; i < objects.length; i++) {
+      objects[i] = null;
+    }
+    fieldMask = 0;
+    listener = CoronaLua.REFNIL;
+
+    synchronized (pool) {
+      if (poolCount < POOL_SIZE) {
+        pool[poolCount++] = this;
+      }
+    }
+  }
+
+  PollfishEvent set(Field field, Object value)
+  {
+    if (value == null) {
+      fieldMask &= ~(1L << field.ordinal());
+      objects[field.ordinal()] = null;
+    }
+    else {
+      fieldMask |= 1L << field.ordinal();
+      objects[field.ordinal()] = value;
+    }
+    return this;
+  }
+
+  PollfishEvent set(Field field, boolean value)
+  {
+    return set(field, value ? 1L : 0L);
+  }
+
+  PollfishEvent set(Field field, long value)
+  {
+    fieldMask |= 1L << field.ordinal();
+    numbers[field.ordinal()] = value;
+    return this;
+  }
+
+  boolean has(Field field)
+  {
+    return (fieldMask & (1L << field.ordinal())) != 0;
+  }
+
+  Object getObject(Field field)
+  {
+    return objects[field.ordinal()];
+  }
+
+  long getNumber(Field field)
+  {
+    return numbers[field.ordinal()];
+  }
+
+  // set the Lua listener reference this record will be delivered to
+  PollfishEvent setListener(int listener)
+  {
+    this.listener = listener;
+    return this;
+  }
+
+  // push a complete "adsRequest" event table onto the Lua stack
+  void pushEvent(LuaState L)
+  {
+    CoronaLua.newEvent(L, LuaLoader.EVENT_NAME);
+
+    for (Field field : FIELDS) {
+      if (! has(field)) {
+        continue;
+      }
+
+      int index = field.ordinal();
+
+      switch (field.kind) {
+        case STRING:
+          L.pushString((String)objects[index]);
+          break;
+        case BOOLEAN:
+          L.pushBoolean(numbers[index] != 0);
+          break;
+        case NUMBER:
+          L.pushNumber(numbers[index]);
+          break;
+        default:
+          if (objects[index] instanceof SurveyData) {
+            ((SurveyData)objects[index]).pushTo(L);
+          }
+          else {
+            CoronaLua.pushValue(L, objects[index]);
+          }
+          break;
+      }
+      L.setField(-2, field.key);
+    }
+
+    // add error key if not set
+    if (! has(Field.IS_ERROR)) {
+      L.pushBoolean(false);
+      L.setField(-2, CoronaLuaEvent.ISERROR_KEY);
+    }
+
+    // add provider
+    L.pushString(LuaLoader.PROVIDER_NAME);
+    L.setField(-2, CoronaLuaEvent.PROVIDER_KEY);
+  }
+
+  @Override
+  public void executeUsing(CoronaRuntime runtime)
+  {
+    PluginTrace.begin(TRACE_DELIVER);
+    try {
+      LuaState L = runtime.getLuaState();
+      pushEvent(L);
+      CoronaLua.dispatchEvent(L, listener, 0);
+    }
+    catch (Exception ex) {
+      ex.printStackTrace();
+    }
+    finally {
+      recycle();
+      PluginTrace.end(TRACE_DELIVER);
+    }
+  }
+}
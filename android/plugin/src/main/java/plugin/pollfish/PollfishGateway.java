@@ -0,0 +1,58 @@
+//
+// PollfishGateway.java
+// Pollfish Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import android.app.Activity;
+
+import com.pollfish.Pollfish;
+import com.pollfish.builder.Params;
+
+/**
+ * The Pollfish SDK calls made by the plugin.
+ * <p/>
+ * The plugin never calls the static SDK entry points directly, it goes through the current
+ * gateway instead. In the app this is always {@link #SDK}; a JVM harness can install a fake that
+ * answers requests and fires the listeners in the params itself, so the plugin can be exercised
+ * without the SDK or a network.
+ */
+interface PollfishGateway
+{
+  void initWith(Activity activity, Params params);
+  void show();
+  void hide();
+  boolean isPollfishPresent();
+
+  // the Pollfish SDK
+  PollfishGateway SDK = new PollfishGateway() {
+    @Override
+    public void initWith(Activity activity, Params params)
+    {
+      Pollfish.initWith(activity, params);
+    }
+
+    @Override
+    public void show()
+    {
+      Pollfish.show();
+    }
+
+    @Override
+    public void hide()
+    {
+      Pollfish.hide();
+    }
+
+    @Override
+    public boolean isPollfishPresent()
+    {
+      return Pollfish.isPollfishPresent();
+    }
+  };
+}
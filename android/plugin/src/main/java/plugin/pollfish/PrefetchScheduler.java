@@ -0,0 +1,146 @@
+//
+// PrefetchScheduler.java
+// Pollfish Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import android.os.SystemClock;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps a survey warm by re-requesting one in the background.
+ * <p/>
+ * A received survey is considered fresh for the configured TTL. Once it goes stale, or once it
+ * has been consumed (completed, not available, not eligible), a new survey is requested. Requests
+ * are never made more often than the minimum request interval, nothing is requested while a survey
+ * is on screen, and the scheduler does nothing while paused (runtime suspended).
+ */
+final class PrefetchScheduler
+{
+  static final long DEFAULT_TTL_MS = 30 * 60 * 1000;
+  static final long MIN_REQUEST_INTERVAL_MS = 60 * 1000;
+
+  // the plugin side of the scheduler
+  interface Host
+  {
+    boolean isSurveyReady();
+    boolean isSurveyOpen();
+    void requestSurvey();
+  }
+
+  private final ScheduledExecutorService executor;
+  private final Host host;
+  private final long ttlMs;
+  private final Runnable checkTask = this::check;
+
+  private boolean isRunning = false;
+  private boolean isPaused = false;
+  private long receivedAt = 0;                // elapsed realtime of the last received survey
+  private long requestedAt = 0;               // elapsed realtime of the last survey request
+  private ScheduledFuture<?> pendingCheck = null;
+
+  PrefetchScheduler(ScheduledExecutorService executor, Host host, long ttlMs)
+  {
+    this.executor = executor;
+    this.host = host;
+    this.ttlMs = ttlMs;
+  }
+
+  // start keeping a survey warm (called when load() has provided the request parameters)
+  synchronized void start()
+  {
+    requestedAt = SystemClock.elapsedRealtime();
+    if (! isRunning) {
+      isRunning = true;
+      scheduleCheck(ttlMs);
+    }
+  }
+
+  synchronized void stop()
+  {
+    isRunning = false;
+    cancelCheck();
+  }
+
+  synchronized void pause()
+  {
+    isPaused = true;
+    cancelCheck();
+  }
+
+  synchronized void resume()
+  {
+    isPaused = false;
+    scheduleCheck(0);
+  }
+
+  synchronized void onSurveyReceived()
+  {
+    receivedAt = SystemClock.elapsedRealtime();
+    scheduleCheck(ttlMs);
+  }
+
+  // the current survey has been completed or none is available
+  synchronized void onSurveyGone()
+  {
+    receivedAt = 0;
+    scheduleCheck(0);
+  }
+
+  private synchronized void check()
+  {
+    pendingCheck = null;
+    if (! isRunning || isPaused) {
+      return;
+    }
+
+    long now = SystemClock.elapsedRealtime();
+
+    // never replace a survey the user is looking at
+    if (host.isSurveyOpen()) {
+      scheduleCheck(MIN_REQUEST_INTERVAL_MS);
+      return;
+    }
+
+    // still fresh
+    if (host.isSurveyReady() && (receivedAt != 0) && (now - receivedAt < ttlMs)) {
+      scheduleCheck(receivedAt + ttlMs - now);
+      return;
+    }
+
+    // bound the request rate
+    long sinceRequest = now - requestedAt;
+    if ((requestedAt != 0) && (sinceRequest < MIN_REQUEST_INTERVAL_MS)) {
+      scheduleCheck(MIN_REQUEST_INTERVAL_MS - sinceRequest);
+      return;
+    }
+
+    requestedAt = now;
+    host.requestSurvey();
+    scheduleCheck(MIN_REQUEST_INTERVAL_MS);
+  }
+
+  private void scheduleCheck(long delayMs)
+  {
+    cancelCheck();
+    if (isRunning && ! isPaused) {
+      pendingCheck = executor.schedule(checkTask, Math.max(0, delayMs), TimeUnit.MILLISECONDS);
+    }
+  }
+
+  private void cancelCheck()
+  {
+    if (pendingCheck != null) {
+      pendingCheck.cancel(false);
+      pendingCheck = null;
+    }
+  }
+}
@@ -0,0 +1,161 @@
+//
+// RetryEngine.java
+// Pollfish Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retries survey requests that came back "notAvailable" or "notEligible" with exponential backoff.
+ * <p/>
+ * The delay before retry n is baseDelay * multiplier^(n-1), capped at maxDelay and spread by
+ * +/- jitter. "notEligible" responses have their own (by default zero) retry budget, since a user
+ * that has been screened out is unlikely to qualify moments later. A retry that falls due while
+ * the runtime is suspended is held back until it resumes.
+ */
+final class RetryEngine
+{
+  static final long DEFAULT_BASE_DELAY_MS = 2000;
+  static final double DEFAULT_MULTIPLIER = 2.0;
+  static final double DEFAULT_JITTER = 0.2;
+  static final int DEFAULT_MAX_ATTEMPTS = 5;
+  static final long DEFAULT_MAX_DELAY_MS = 5 * 60 * 1000;
+  static final int DEFAULT_NOT_ELIGIBLE_MAX_ATTEMPTS = 0;
+
+  static final long NO_RETRY = -1;
+
+  // immutable retry settings from init()
+  static final class Policy
+  {
+    final long baseDelayMs;
+    final double multiplier;
+    final double jitter;
+    final int maxAttempts;                  // retries after a "notAvailable" response
+    final long maxDelayMs;
+    final int notEligibleMaxAttempts;       // retries after a "notEligible" response
+
+    Policy(long baseDelayMs, double multiplier, double jitter, int maxAttempts, long maxDelayMs, int notEligibleMaxAttempts)
+    {
+      this.baseDelayMs = baseDelayMs;
+      this.multiplier = multiplier;
+      this.jitter = jitter;
+      this.maxAttempts = maxAttempts;
+      this.maxDelayMs = maxDelayMs;
+      this.notEligibleMaxAttempts = notEligibleMaxAttempts;
+    }
+
+    // delay before the given retry (1 based), jitter excluded
+    long baseDelayFor(int retry)
+    {
+      double delay = baseDelayMs * Math.pow(multiplier, retry - 1);
+      return (long)Math.min(delay, maxDelayMs);
+    }
+  }
+
+  // the plugin side of the engine
+  interface Host
+  {
+    void retry();
+  }
+
+  private final ScheduledExecutorService executor;
+  private final Policy policy;
+  private final Host host;
+  private final Runnable retryTask = this::runRetry;
+
+  private int attempt = 1;                   // current request attempt, 1 is the request made by load()
+  private boolean isPaused = false;
+  private boolean isRetryDue = false;         // a retry fell due while paused
+  private ScheduledFuture<?> pendingRetry = null;
+
+  RetryEngine(ScheduledExecutorService executor, Policy policy, Host host)
+  {
+    this.executor = executor;
+    this.policy = policy;
+    this.host = host;
+  }
+
+  synchronized int getAttempt()
+  {
+    return attempt;
+  }
+
+  // start over, called for a new load() and when a survey has been received
+  synchronized void reset()
+  {
+    cancelRetry();
+    attempt = 1;
+  }
+
+  // record a failed attempt, returns the delay until the next attempt or NO_RETRY
+  synchronized long onFailure(boolean isNotEligible)
+  {
+    cancelRetry();
+
+    int maxRetries = isNotEligible ? policy.notEligibleMaxAttempts : policy.maxAttempts;
+    int retry = attempt;                      // retries made so far + 1
+    if (retry > maxRetries) {
+      return NO_RETRY;
+    }
+
+    long delay = policy.baseDelayFor(retry);
+    if (policy.jitter > 0) {
+      double spread = policy.jitter * (2 * ThreadLocalRandom.current().nextDouble() - 1);
+      delay = Math.max(0, (long)(delay * (1 + spread)));
+    }
+
+    pendingRetry = executor.schedule(retryTask, delay, TimeUnit.MILLISECONDS);
+    return delay;
+  }
+
+  synchronized void pause()
+  {
+    isPaused = true;
+  }
+
+  synchronized void resume()
+  {
+    isPaused = false;
+    if (isRetryDue) {
+      isRetryDue = false;
+      pendingRetry = executor.schedule(retryTask, 0, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  synchronized void cancel()
+  {
+    cancelRetry();
+  }
+
+  private void runRetry()
+  {
+    synchronized (this) {
+      pendingRetry = null;
+      if (isPaused) {
+        isRetryDue = true;
+        return;
+      }
+      attempt++;
+    }
+
+    host.retry();
+  }
+
+  private void cancelRetry()
+  {
+    isRetryDue = false;
+    if (pendingRetry != null) {
+      pendingRetry.cancel(false);
+      pendingRetry = null;
+    }
+  }
+}
@@ -0,0 +1,391 @@
+//
+// RewardOutbox.java
+// Pollfish Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import android.os.SystemClock;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of completed surveys, kept until Lua acknowledges the reward.
+ * <p/>
+ * Every "completed" event is given a reward id and recorded here, so a reward is not lost when
+ * the event cannot be delivered (the runtime is gone, the poll queue is full, the app is killed).
+ * Rewards that were never acknowledged are replayed on the next init().
+ * <p/>
+ * Each record is its length, a CRC32 of its contents and the contents, so a record torn by a
+ * crash is detected and dropped with everything after it. Acknowledgements are appended as
+ * records too. Records are framed in memory on the plugin thread, and written to disk together
+ * on the journal thread a short delay after the first one, so the plugin thread never waits for
+ * the disk. The file is synced at most once per sync interval, except when flushed on suspend or
+ * exit. Once every reward has been acknowledged the file is truncated, otherwise it is rewritten
+ * with only the pending rewards when it grows past the compaction size (or after a failed write).
+ * open() is called once on the journal thread, before anything is written.
+ */
+final class RewardOutbox
+{
+  static final String FILE_NAME = "pollfish-rewards.journal";
+  static final long FLUSH_DELAY_MS = 100;
+  static final long SYNC_INTERVAL_MS = 1000;
+  static final int COMPACT_SIZE = 64 * 1024;
+
+  private static final byte RECORD_COMPLETED = 1;
+  private static final byte RECORD_ACKNOWLEDGED = 2;
+  private static final int MAX_RECORD_SIZE = 16 * 1024;   // anything larger is corruption
+
+  // a completed survey waiting to be acknowledged
+  static final class Reward
+  {
+    final long id;
+    final String requestUUID;
+    final SurveyData data;
+
+    Reward(long id, String requestUUID, SurveyData data)
+    {
+      this.id = id;
+      this.requestUUID = requestUUID;
+      this.data = data;
+    }
+  }
+
+  private final File file;
+  private final ScheduledExecutorService executor;        // the journal thread, all writes run there
+  private final Runnable flushTask = () -> write(false);
+
+  // shared by the plugin thread and the journal thread, guarded by this
+  private final LinkedHashMap<Long, Reward> pending = new LinkedHashMap<>();
+  private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();   // records not written yet
+  private final ByteArrayOutputStream record = new ByteArrayOutputStream();
+  private final DataOutputStream recordOut = new DataOutputStream(record);
+  private final DataOutputStream bufferOut = new DataOutputStream(buffer);
+  private final CRC32 crc = new CRC32();
+  private long lastId = 0;
+  private ScheduledFuture<?> pendingFlush = null;
+
+  // journal thread only
+  private FileOutputStream out = null;
+  private long fileSize = 0;
+  private long syncedAt = 0;                  // elapsed realtime of the last sync
+  private boolean isDirty = false;            // written but not synced
+  private boolean isCompactionNeeded = false; // a write failed, the file may be missing records
+
+  RewardOutbox(File file, ScheduledExecutorService executor)
+  {
+    this.file = file;
+    this.executor = executor;
+  }
+
+  // read the journal, returns the rewards that were never acknowledged, oldest first
+  synchronized List<Reward> open() throws IOException
+  {
+    long validSize = 0;
+
+    if (file.exists()) {
+      try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+        while (true) {
+          int length;
+          try {
+            length = in.readInt();
+          }
+          catch (EOFException e) {
+            break;
+          }
+
+          int checksum = in.readInt();
+          if ((length <= 0) || (length > MAX_RECORD_SIZE)) {
+            break;
+          }
+
+          byte[] contents = new byte[length];
+          in.readFully(contents);
+
+          crc.reset();
+          crc.update(contents, 0, length);
+          if ((int)crc.getValue() != checksum) {
+            break;
+          }
+
+          read(new DataInputStream(new ByteArrayInputStream(contents)));
+          validSize += 8 + length;
+        }
+      }
+      catch (EOFException e) {
+        // torn record at the end
+      }
+
+      // drop a torn or corrupt tail so new records are not appended after it
+      if (validSize != file.length()) {
+        PluginLog.warning(LuaLoader.PLUGIN_NAME, "reward journal: dropped {} corrupt bytes", file.length() - validSize);
+        try (RandomAccessFile truncate = new RandomAccessFile(file, "rw")) {
+          truncate.setLength(validSize);
+        }
+      }
+    }
+
+    fileSize = validSize;
+    out = new FileOutputStream(file, true);
+
+    // nothing to keep
+    if (pending.isEmpty() && (fileSize > 0)) {
+      truncate();
+    }
+
+    return new ArrayList<>(pending.values());
+  }
+
+  // record a completed survey, returns its reward id
+  synchronized long add(String requestUUID, SurveyData data)
+  {
+    // ids stay unique across runs as long as the clock does not go back past the last one
+    long id = Math.max(System.currentTimeMillis(), lastId + 1);
+    lastId = id;
+
+    Reward reward = new Reward(id, requestUUID, data);
+    pending.put(id, reward);
+
+    try {
+      writeCompleted(reward);
+      append();
+    }
+    catch (IOException e) {
+      // not thrown by in-memory streams
+    }
+
+    return id;
+  }
+
+  // the reward has been granted, returns false if the id is not pending
+  synchronized boolean acknowledge(long id)
+  {
+    if (pending.remove(id) == null) {
+      return false;
+    }
+
+    try {
+      recordOut.writeByte(RECORD_ACKNOWLEDGED);
+      recordOut.writeLong(id);
+      append();
+    }
+    catch (IOException e) {
+      // not thrown by in-memory streams
+    }
+
+    return true;
+  }
+
+  // write and sync on the journal thread now (the app may be killed while suspended)
+  void flush()
+  {
+    executor.execute(() -> write(true));
+  }
+
+  // write, sync and close on the journal thread, nothing is written after this
+  void close()
+  {
+    executor.execute(() -> {
+      write(true);
+
+      if (out != null) {
+        try {
+          out.close();
+        }
+        catch (IOException ignored) {
+        }
+        out = null;
+      }
+    });
+  }
+
+  private void read(DataInputStream in) throws IOException
+  {
+    byte type = in.readByte();
+    long id = in.readLong();
+    lastId = Math.max(lastId, id);
+
+    if (type == RECORD_COMPLETED) {
+      String requestUUID = in.readBoolean() ? in.readUTF() : null;
+      pending.put(id, new Reward(id, requestUUID, SurveyData.readFrom(in)));
+    }
+    else if (type == RECORD_ACKNOWLEDGED) {
+      pending.remove(id);
+    }
+  }
+
+  private void writeCompleted(Reward reward) throws IOException
+  {
+    recordOut.writeByte(RECORD_COMPLETED);
+    recordOut.writeLong(reward.id);
+    recordOut.writeBoolean(reward.requestUUID != null);
+    if (reward.requestUUID != null) {
+      recordOut.writeUTF(reward.requestUUID);
+    }
+    reward.data.writeTo(recordOut);
+  }
+
+  // move the record into the write buffer, framed with its length and checksum
+  private void frame() throws IOException
+  {
+    byte[] contents = record.toByteArray();
+    record.reset();
+
+    crc.reset();
+    crc.update(contents, 0, contents.length);
+
+    bufferOut.writeInt(contents.length);
+    bufferOut.writeInt((int)crc.getValue());
+    bufferOut.write(contents);
+  }
+
+  // frame the record and schedule a write
+  private void append() throws IOException
+  {
+    frame();
+
+    if (pendingFlush == null) {
+      pendingFlush = executor.schedule(flushTask, FLUSH_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  // on the journal thread, the buffered records are taken under the lock and written outside it
+  private void write(boolean sync)
+  {
+    final boolean isEmpty;
+    final boolean isCompacted;
+    final byte[] bytes;
+
+    synchronized (this) {
+      if (pendingFlush != null) {
+        pendingFlush.cancel(false);
+        pendingFlush = null;
+      }
+
+      if (out == null) {
+        return;
+      }
+
+      isEmpty = pending.isEmpty();
+      isCompacted = ! isEmpty && (isCompactionNeeded || (fileSize + buffer.size() > COMPACT_SIZE));
+      if (isCompacted) {
+        bytes = framePending();
+      }
+      else {
+        bytes = buffer.toByteArray();
+      }
+      buffer.reset();
+    }
+
+    try {
+      if (isEmpty) {
+        // every reward has been acknowledged, nothing in the file or the buffer is needed
+        if (fileSize > 0) {
+          truncate();
+        }
+        isCompactionNeeded = false;
+        return;
+      }
+
+      if (isCompacted) {
+        compact(bytes);
+      }
+      else if (bytes.length > 0) {
+        out.write(bytes);
+        fileSize += bytes.length;
+        isDirty = true;
+      }
+
+      if (isDirty) {
+        long now = SystemClock.elapsedRealtime();
+        if (sync || (now - syncedAt >= SYNC_INTERVAL_MS)) {
+          out.getFD().sync();
+          syncedAt = now;
+          isDirty = false;
+        }
+        else {
+          // sync later, keeping at most one sync per interval
+          synchronized (this) {
+            if (pendingFlush == null) {
+              pendingFlush = executor.schedule(flushTask, SYNC_INTERVAL_MS - (now - syncedAt), TimeUnit.MILLISECONDS);
+            }
+          }
+        }
+      }
+    }
+    catch (IOException e) {
+      // the records taken are gone from the buffer, the next write rewrites every pending reward
+      isCompactionNeeded = true;
+      PluginLog.warning(LuaLoader.PLUGIN_NAME, "reward journal write failed: {}", e);
+    }
+  }
+
+  // the records of every pending reward (the buffered ones are already included)
+  private byte[] framePending()
+  {
+    buffer.reset();
+    try {
+      for (Reward reward : pending.values()) {
+        writeCompleted(reward);
+        frame();
+      }
+    }
+    catch (IOException e) {
+      // not thrown by in-memory streams
+    }
+    return buffer.toByteArray();
+  }
+
+  private void truncate() throws IOException
+  {
+    out.getChannel().truncate(0);
+    out.getFD().sync();
+    fileSize = 0;
+    isDirty = false;
+  }
+
+  // write the pending rewards to a new journal, then replace the old one
+  private void compact(byte[] bytes) throws IOException
+  {
+    File compacted = new File(file.getPath() + ".tmp");
+    try (FileOutputStream compactedOut = new FileOutputStream(compacted)) {
+      compactedOut.write(bytes);
+      compactedOut.getFD().sync();
+    }
+
+    // rename replaces the journal atomically, the old one stays if it fails
+    out.close();
+    boolean isReplaced = compacted.renameTo(file);
+    out = new FileOutputStream(file, true);
+
+    if (! isReplaced) {
+      throw new IOException("unable to replace " + file);
+    }
+
+    fileSize = bytes.length;
+    syncedAt = SystemClock.elapsedRealtime();
+    isDirty = false;
+    isCompactionNeeded = false;
+  }
+}
@@ -0,0 +1,183 @@
+//
+// SurveyData.java
+// Pollfish Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import androidx.annotation.Nullable;
+
+import com.naef.jnlua.LuaState;
+import com.pollfish.callback.SurveyInfo;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Immutable copy of the survey details reported by the SDK, delivered as event.data.
+ * <p/>
+ * The data can be pushed directly as a Lua table, or serialized to the JSON string the plugin
+ * has always sent.
+ */
+final class SurveyData
+{
+  private static final String PLAYFUL_SUFFIX = "Playful";
+
+  final Integer surveyCPA;
+  final Integer surveyIR;
+  final Integer surveyLOI;
+  final String surveyClass;
+  final String rewardName;
+  final Integer rewardValue;
+  final boolean playfulSurvey;
+
+  private SurveyData(SurveyInfo info)
+  {
+    surveyCPA = info.getSurveyCPA();
+    surveyIR = info.getSurveyIR();
+    surveyLOI = info.getSurveyLOI();
+    surveyClass = info.getSurveyClass();
+    rewardName = info.getRewardName();
+    rewardValue = info.getRewardValue();
+    playfulSurvey = (surveyClass != null) && surveyClass.endsWith(PLAYFUL_SUFFIX);
+  }
+
+  private SurveyData()
+  {
+    surveyCPA = null;
+    surveyIR = null;
+    surveyLOI = null;
+    surveyClass = null;
+    rewardName = null;
+    rewardValue = null;
+    playfulSurvey = false;
+  }
+
+  private SurveyData(Integer surveyCPA, Integer surveyIR, Integer surveyLOI, String surveyClass, String rewardName,
+    Integer rewardValue)
+  {
+    this.surveyCPA = surveyCPA;
+    this.surveyIR = surveyIR;
+    this.surveyLOI = surveyLOI;
+    this.surveyClass = surveyClass;
+    this.rewardName = rewardName;
+    this.rewardValue = rewardValue;
+    playfulSurvey = (surveyClass != null) && surveyClass.endsWith(PLAYFUL_SUFFIX);
+  }
+
+  // the SDK may report a received survey without any info
+  static SurveyData from(@Nullable SurveyInfo info)
+  {
+    return (info != null) ? new SurveyData(info) : new SurveyData();
+  }
+
+  // push the data as a Lua table
+  void pushTo(LuaState L)
+  {
+    L.newTable(0, 8);
+
+    L.pushBoolean(playfulSurvey);
+    L.setField(-2, "playfulSurvey");
+    pushNumberField(L, "surveyPrice", surveyCPA);
+    pushNumberField(L, "surveyCPA", surveyCPA);
+    pushNumberField(L, "surveyIR", surveyIR);
+    pushNumberField(L, "surveyLOI", surveyLOI);
+    pushStringField(L, "surveyClass", surveyClass);
+    pushStringField(L, "rewardName", rewardName);
+    pushNumberField(L, "rewardValue", rewardValue);
+  }
+
+  // serialize the data to JSON (missing values are left out)
+  String toJSON()
+  {
+    JSONObject json = new JSONObject();
+
+    try {
+      json.put("playfulSurvey", playfulSurvey);
+      json.put("surveyPrice", surveyCPA);
+      json.put("surveyCPA", surveyCPA);
+      json.put("surveyIR", surveyIR);
+      json.put("surveyLOI", surveyLOI);
+      json.put("surveyClass", surveyClass);
+      json.put("rewardName", rewardName);
+      json.put("rewardValue", rewardValue);
+    }
+    catch (JSONException e) {
+      // only thrown for non-finite numbers, which cannot occur here
+    }
+
+    return json.toString();
+  }
+
+  // binary form used by the reward outbox, missing values are written as absent
+  void writeTo(DataOutput out) throws IOException
+  {
+    writeInteger(out, surveyCPA);
+    writeInteger(out, surveyIR);
+    writeInteger(out, surveyLOI);
+    writeString(out, surveyClass);
+    writeString(out, rewardName);
+    writeInteger(out, rewardValue);
+  }
+
+  static SurveyData readFrom(DataInput in) throws IOException
+  {
+    Integer surveyCPA = readInteger(in);
+    Integer surveyIR = readInteger(in);
+    Integer surveyLOI = readInteger(in);
+    String surveyClass = readString(in);
+    String rewardName = readString(in);
+    Integer rewardValue = readInteger(in);
+    return new SurveyData(surveyCPA, surveyIR, surveyLOI, surveyClass, rewardName, rewardValue);
+  }
+
+  private static void writeInteger(DataOutput out, Integer value) throws IOException
+  {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeInt(value);
+    }
+  }
+
+  private static void writeString(DataOutput out, String value) throws IOException
+  {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+
+  private static Integer readInteger(DataInput in) throws IOException
+  {
+    return in.readBoolean() ? in.readInt() : null;
+  }
+
+  private static String readString(DataInput in) throws IOException
+  {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  private static void pushNumberField(LuaState L, String key, Integer value)
+  {
+    if (value != null) {
+      L.pushInteger(value);
+      L.setField(-2, key);
+    }
+  }
+
+  private static void pushStringField(LuaState L, String key, String value)
+  {
+    if (value != null) {
+      L.pushString(value);
+      L.setField(-2, key);
+    }
+  }
+}
@@ -0,0 +1,167 @@
+//
+// SurveyLifecycle.java
+// Pollfish Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Lifecycle of the plugin and its current survey, held in a single atomic reference.
+ * <p/>
+ * Every change is a compare-and-set from the observed state, and is only made if the transition
+ * table allows it, so the Lua thread, the UI thread and SDK callback threads always agree on a
+ * consistent state without locks.
+ * <p/>
+ * A survey completed or screened out while on screen stays on screen until the panel is closed,
+ * so "closed" is reported exactly once for each survey that was opened: {@link #close()} only
+ * succeeds from a state with the panel on screen. A prefetch refresh keeps the current survey
+ * available (REFRESHING) until the new one arrives, and returns to READY if it fails.
+ */
+final class SurveyLifecycle
+{
+  enum State
+  {
+    UNINITIALIZED,
+    REGISTERED,     // init() done, nothing requested yet
+    LOADING,                // survey requested
+    READY,                  // survey received
+    REFRESHING,             // survey still available, a new one requested in the background
+    DISPLAYED,              // survey panel on screen
+    DISPLAYED_COMPLETED,    // survey completed, panel still on screen
+    DISPLAYED_FAILED,       // user screened out, panel still on screen
+    CLOSED,                 // survey panel closed without completing, survey still available
+    COMPLETED,              // survey completed
+    FAILED;                 // no survey available, or user not eligible
+
+    private int allowed;    // bit set of the states this state may move to
+    private State closed;   // the state once the panel is closed, null when not on screen
+
+    static {
+      UNINITIALIZED.allow(REGISTERED);
+      REGISTERED.allow(LOADING);
+      LOADING.allow(LOADING, READY, FAILED);
+      READY.allow(LOADING, READY, REFRESHING, DISPLAYED, COMPLETED, FAILED);
+      REFRESHING.allow(LOADING, READY, REFRESHING, DISPLAYED, COMPLETED, FAILED);
+      DISPLAYED.allow(CLOSED, DISPLAYED_COMPLETED, DISPLAYED_FAILED);
+      DISPLAYED_COMPLETED.allow(COMPLETED);
+      DISPLAYED_FAILED.allow(FAILED);
+      CLOSED.allow(LOADING, READY, REFRESHING, DISPLAYED, COMPLETED, FAILED);
+      COMPLETED.allow(LOADING, READY);                // the SDK may deliver a new survey on its own
+      FAILED.allow(LOADING, READY, FAILED);
+
+      DISPLAYED.closed = CLOSED;
+      DISPLAYED_COMPLETED.closed = COMPLETED;
+      DISPLAYED_FAILED.closed = FAILED;
+    }
+
+    private void allow(State... targets)
+    {
+      for (State target : targets) {
+        allowed |= 1 << target.ordinal();
+      }
+    }
+
+    boolean canTransitionTo(State target)
+    {
+      return (allowed & (1 << target.ordinal())) != 0;
+    }
+
+    // init() has completed
+    boolean isRegistered()
+    {
+      return this != UNINITIALIZED;
+    }
+
+    // load() has been called at least once
+    boolean hasLoaded()
+    {
+      return (this != UNINITIALIZED) && (this != REGISTERED);
+    }
+
+    // a survey is available to be shown
+    boolean isSurveyAvailable()
+    {
+      return (this == READY) || (this == REFRESHING) || (this == DISPLAYED) || (this == CLOSED);
+    }
+
+    // the survey panel is on screen
+    boolean isOnScreen()
+    {
+      return closed != null;
+    }
+  }
+
+  private final AtomicReference<State> state = new AtomicReference<>(State.UNINITIALIZED);
+
+  State get()
+  {
+    return state.get();
+  }
+
+  // move to the target state, returns the state that was left or null if the transition is not allowed
+  State transitionTo(State target)
+  {
+    State current;
+
+    do {
+      current = state.get();
+      if (! current.canTransitionTo(target)) {
+        return null;
+      }
+    } while (! state.compareAndSet(current, target));
+
+    return current;
+  }
+
+  // move from the expected state only, returns false if the state was another one
+  boolean transition(State expected, State target)
+  {
+    return expected.canTransitionTo(target) && state.compareAndSet(expected, target);
+  }
+
+  // the survey was completed or failed (COMPLETED or FAILED), while on screen it stays there until closed
+  // returns the state that was left or null if the transition is not allowed
+  State finish(State outcome)
+  {
+    State current;
+    State target;
+
+    do {
+      current = state.get();
+      target = (current != State.DISPLAYED) ? outcome
+        : (outcome == State.COMPLETED) ? State.DISPLAYED_COMPLETED : State.DISPLAYED_FAILED;
+      if (! current.canTransitionTo(target)) {
+        return null;
+      }
+    } while (! state.compareAndSet(current, target));
+
+    return current;
+  }
+
+  // the survey panel was closed, returns the state that was left or null if no panel was on screen
+  State close()
+  {
+    State current;
+
+    do {
+      current = state.get();
+      if (current.closed == null) {
+        return null;
+      }
+    } while (! state.compareAndSet(current, current.closed));
+
+    return current;
+  }
+
+  // back to UNINITIALIZED regardless of the current state (runtime exiting)
+  void reset()
+  {
+    state.set(State.UNINITIALIZED);
+  }
+}
@@ -0,0 +1,234 @@
+//
+// SurveySessions.java
+// Pollfish Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import com.naef.jnlua.LuaState;
+
+/**
+ * Bounded history of survey requests, returned to Lua by pollfish.getSessions().
+ * <p/>
+ * Every survey request (load(), prefetch, retry or resume) starts a session that keeps the
+ * request UUID and parameters it was made with, its timestamps and its outcome, so events can
+ * be matched to the request they answer even if setUserDetails() has changed the request UUID
+ * since. Sessions are numbered from 1 and kept in a fixed ring of reused records, with times in
+ * plain long fields (milliseconds since init(), {@link #NOT_YET} until reached). SDK callbacks
+ * always answer the latest request, so the least recently used session is the least recently
+ * started one, and that is the record a new session replaces.
+ * <p/>
+ * The one exception is the survey on screen: a prefetch or load() may start a new session while
+ * it is displayed, so the session is pinned when the survey is opened, and its "completed" and
+ * "closed" events (and the reward journaled for it) are matched to the pinned session until it
+ * is closed.
+ */
+final class SurveySessions
+{
+  static final int CAPACITY = 32;
+  static final long NOT_YET = -1;
+
+  enum Outcome
+  {
+    PENDING("pending"),
+    RECEIVED("received"),
+    NOT_AVAILABLE("notAvailable"),
+    NOT_ELIGIBLE("notEligible"),
+    COMPLETED("completed"),
+    CLOSED("closed");                   // displayed and closed without completing
+
+    final String key;
+
+    Outcome(String key)
+    {
+      this.key = key;
+    }
+  }
+
+  private static final class Session
+  {
+    long id = 0;                        // 0 while the record is unused
+    PollfishConfig config = null;
+    Outcome outcome = Outcome.PENDING;
+    long requestedMs = NOT_YET;
+    long receivedMs = NOT_YET;
+    long openedMs = NOT_YET;
+    long completedMs = NOT_YET;
+    long closedMs = NOT_YET;
+  }
+
+  private final Session[] sessions = new Session[CAPACITY];
+  private long lastId = 0;
+  private long displayedId = 0;         // session of the survey on screen, 0 if none
+
+  SurveySessions()
+  {
+    for (int i = 0; i < sessions.length; i++) {
+      sessions[i] = new Session();
+    }
+  }
+
+  // a survey is requested with the given config, returns the new session id
+  synchronized long start(PollfishConfig config, long nowMs)
+  {
+    Session session = sessions[(int)(++lastId % CAPACITY)];
+    session.id = lastId;
+    session.config = config;
+    session.outcome = Outcome.PENDING;
+    session.requestedMs = nowMs;
+    session.receivedMs = NOT_YET;
+    session.openedMs = NOT_YET;
+    session.completedMs = NOT_YET;
+    session.closedMs = NOT_YET;
+    return lastId;
+  }
+
+  synchronized void onReceived(long nowMs)
+  {
+    Session session = current();
+    if (session != null) {
+      session.outcome = Outcome.RECEIVED;
+      session.receivedMs = nowMs;
+    }
+  }
+
+  // notAvailable or notEligible
+  synchronized void onFailed(Outcome outcome)
+  {
+    Session session = current();
+    if (session != null) {
+      session.outcome = outcome;
+    }
+  }
+
+  // the survey of the current session is on screen, pin its session
+  synchronized void onOpened(long nowMs)
+  {
+    Session session = current();
+    if (session != null) {
+      session.openedMs = nowMs;
+      displayedId = session.id;
+    }
+  }
+
+  synchronized void onCompleted(long nowMs)
+  {
+    Session session = displayedOrCurrent();
+    if (session != null) {
+      session.outcome = Outcome.COMPLETED;
+      session.completedMs = nowMs;
+    }
+  }
+
+  // the survey panel was closed (not just the indicator hidden), unpins its session
+  synchronized void onClosed(long nowMs)
+  {
+    Session session = displayedOrCurrent();
+    if (session != null) {
+      session.closedMs = nowMs;
+      if (session.outcome != Outcome.COMPLETED) {
+        session.outcome = Outcome.CLOSED;
+      }
+    }
+    displayedId = 0;
+  }
+
+  // add the id and request UUID of the session an event belongs to
+  // "completed" and "closed" belong to the survey on screen, everything else to the latest request
+  synchronized void tag(PollfishEvent event)
+  {
+    final Object phase = event.getObject(PollfishEvent.Field.PHASE);
+    final boolean isDisplayed = LuaLoader.PHASE_COMPLETED.equals(phase) || LuaLoader.PHASE_CLOSED.equals(phase);
+
+    Session session = isDisplayed ? displayedOrCurrent() : current();
+    if (session != null) {
+      event.set(PollfishEvent.Field.SESSION_ID, session.id)
+        .set(PollfishEvent.Field.REQUEST_UUID, session.config.requestUUID);
+    }
+  }
+
+  // the request UUID of the survey on screen (or of the current session), null if there is none
+  synchronized String displayedRequestUUID()
+  {
+    Session session = displayedOrCurrent();
+    return (session != null) ? session.config.requestUUID : null;
+  }
+
+  synchronized void reset()
+  {
+    for (Session session : sessions) {
+      session.id = 0;
+      session.config = null;
+    }
+    lastId = 0;
+    displayedId = 0;
+  }
+
+  // push an array of { id, requestUUID, outcome, rewardMode, offerwallMode, requestedMs, ... }, oldest first
+  synchronized void pushTo(LuaState L)
+  {
+    long first = Math.max(1, lastId - CAPACITY + 1);
+    L.newTable((int)(lastId - first + 1), 0);
+
+    int index = 0;
+    for (long id = first; id <= lastId; id++) {
+      Session session = sessions[(int)(id % CAPACITY)];
+
+      L.newTable(0, 10);
+
+      L.pushNumber(session.id);
+      L.setField(-2, "id");
+
+      if (session.config.requestUUID != null) {
+        L.pushString(session.config.requestUUID);
+        L.setField(-2, "requestUUID");
+      }
+
+      L.pushString(session.outcome.key);
+      L.setField(-2, "outcome");
+
+      L.pushBoolean(session.config.rewardMode);
+      L.setField(-2, "rewardMode");
+
+      L.pushBoolean(session.config.offerwallMode);
+      L.setField(-2, "offerwallMode");
+
+      pushTime(L, "requestedMs", session.requestedMs);
+      pushTime(L, "receivedMs", session.receivedMs);
+      pushTime(L, "openedMs", session.openedMs);
+      pushTime(L, "completedMs", session.completedMs);
+      pushTime(L, "closedMs", session.closedMs);
+
+      L.rawSet(-2, ++index);
+    }
+  }
+
+  private Session current()
+  {
+    return (lastId == 0) ? null : sessions[(int)(lastId % CAPACITY)];
+  }
+
+  // the pinned session, unless its record has been reused since
+  private Session displayedOrCurrent()
+  {
+    if (displayedId != 0) {
+      Session session = sessions[(int)(displayedId % CAPACITY)];
+      if (session.id == displayedId) {
+        return session;
+      }
+    }
+    return current();
+  }
+
+  private static void pushTime(LuaState L, String key, long ms)
+  {
+    if (ms != NOT_YET) {
+      L.pushNumber(ms);
+      L.setField(-2, key);
+    }
+  }
+}
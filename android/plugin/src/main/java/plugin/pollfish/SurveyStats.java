@@ -0,0 +1,237 @@
+//
+// SurveyStats.java
+// Pollfish Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import android.os.SystemClock;
+
+import com.naef.jnlua.LuaState;
+
+/**
+ * Lifecycle counters and latency histograms, returned to Lua by pollfish.getStats().
+ * <p/>
+ * Times are taken from the monotonic elapsed realtime clock. Each latency is measured from a
+ * start mark to the matching stop and recorded in a fixed-size histogram with power of two
+ * millisecond buckets, so memory use does not grow with the number of samples. The counters
+ * also hand out the sequence numbers of the events.
+ */
+final class SurveyStats
+{
+  enum Counter
+  {
+    LOADS("loads"),                     // survey requests (load(), prefetch and retries)
+    FILLS("fills"),
+    NOT_AVAILABLE("notAvailable"),
+    NOT_ELIGIBLE("notEligible"),
+    COMPLETIONS("completions"),
+    EVENTS_COALESCED("eventsCoalesced"),   // replaced by a later event while the runtime was suspended
+    EVENTS_DROPPED("eventsDropped");       // dropped from the full suspend buffer
+
+    final String key;
+
+    Counter(String key)
+    {
+      this.key = key;
+    }
+  }
+
+  enum Latency
+  {
+    INIT("init"),                       // init() -> "init" event
+    LOAD("load"),                       // survey request -> "loaded" event
+    SHOW("show"),                       // show() -> "displayed" event
+    COMPLETE("complete");               // "displayed" -> "completed" event
+
+    final String key;
+
+    Latency(String key)
+    {
+      this.key = key;
+    }
+  }
+
+  private static final Counter[] COUNTERS = Counter.values();
+  private static final Latency[] LATENCIES = Latency.values();
+
+  private final long[] counters = new long[COUNTERS.length];
+  private final long[] marks = new long[LATENCIES.length];       // start time per latency, 0 if not started
+  private final Histogram[] histograms = new Histogram[LATENCIES.length];
+  private long initAt = 0;
+  private long sequence = 0;
+
+  SurveyStats()
+  {
+    for (int i = 0; i < histograms.length; i++) {
+      histograms[i] = new Histogram();
+    }
+  }
+
+  // init() has been called, event times are measured from here
+  synchronized void onInit()
+  {
+    initAt = SystemClock.elapsedRealtime();
+  }
+
+  synchronized void count(Counter counter)
+  {
+    counters[counter.ordinal()]++;
+  }
+
+  synchronized void start(Latency latency)
+  {
+    marks[latency.ordinal()] = Math.max(1, SystemClock.elapsedRealtime());
+  }
+
+  // drop the start mark, the measured step did not complete
+  synchronized void cancel(Latency latency)
+  {
+    marks[latency.ordinal()] = 0;
+  }
+
+  // record the time since the matching start, if there was one
+  synchronized void stop(Latency latency)
+  {
+    long mark = marks[latency.ordinal()];
+    if (mark != 0) {
+      marks[latency.ordinal()] = 0;
+      histograms[latency.ordinal()].record(SystemClock.elapsedRealtime() - mark);
+    }
+  }
+
+  // sequence number of the next event, starting at 1
+  synchronized long nextSequence()
+  {
+    return ++sequence;
+  }
+
+  // milliseconds since init()
+  synchronized long elapsedMs()
+  {
+    return (initAt == 0) ? 0 : SystemClock.elapsedRealtime() - initAt;
+  }
+
+  synchronized void reset()
+  {
+    for (int i = 0; i < counters.length; i++) {
+      counters[i] = 0;
+    }
+    for (int i = 0; i < marks.length; i++) {
+      marks[i] = 0;
+      histograms[i].clear();
+    }
+    initAt = 0;
+    sequence = 0;
+  }
+
+  // push { elapsedMs, events, counters = {...}, latency = { init = {...}, ... } }
+  synchronized void pushTo(LuaState L)
+  {
+    L.newTable(0, 4);
+
+    L.pushNumber(elapsedMs());
+    L.setField(-2, "elapsedMs");
+
+    L.pushNumber(sequence);
+    L.setField(-2, "events");
+
+    L.newTable(0, COUNTERS.length);
+    for (Counter counter : COUNTERS) {
+      L.pushNumber(counters[counter.ordinal()]);
+      L.setField(-2, counter.key);
+    }
+    L.setField(-2, "counters");
+
+    L.newTable(0, LATENCIES.length);
+    for (Latency latency : LATENCIES) {
+      histograms[latency.ordinal()].pushTo(L);
+      L.setField(-2, latency.key);
+    }
+    L.setField(-2, "latency");
+  }
+
+  // latency histogram, bucket 0 holds 0 ms and bucket n holds [2^(n-1), 2^n) ms
+  static final class Histogram
+  {
+    static final int BUCKETS = 24;              // the last bucket also holds anything above ~70 minutes
+
+    private final long[] buckets = new long[BUCKETS];
+    private long count = 0;
+    private long sum = 0;
+    private long min = Long.MAX_VALUE;
+    private long max = 0;
+
+    void record(long ms)
+    {
+      ms = Math.max(0, ms);
+
+      int bucket = Math.min(BUCKETS - 1, Long.SIZE - Long.numberOfLeadingZeros(ms));
+      buckets[bucket]++;
+      count++;
+      sum += ms;
+      min = Math.min(min, ms);
+      max = Math.max(max, ms);
+    }
+
+    void clear()
+    {
+      for (int i = 0; i < BUCKETS; i++) {
+        buckets[i] = 0;
+      }
+      count = 0;
+      sum = 0;
+      min = Long.MAX_VALUE;
+      max = 0;
+    }
+
+    // upper bound of the bucket holding the given quantile, capped at the largest sample
+    long percentile(double quantile)
+    {
+      if (count == 0) {
+        return 0;
+      }
+
+      long rank = Math.max(1, (long)Math.ceil(quantile * count));
+      long seen = 0;
+
+      for (int i = 0; i < BUCKETS; i++) {
+        seen += buckets[i];
+        if (seen >= rank) {
+          long upper = (i == 0) ? 0 : (1L << i) - 1;
+          return Math.min(upper, max);
+        }
+      }
+
+      return max;
+    }
+
+    // push { count, min, max, mean, p50, p90, p99 }
+    void pushTo(LuaState L)
+    {
+      L.newTable(0, 7);
+
+      L.pushNumber(count);
+      L.setField(-2, "count");
+
+      if (count > 0) {
+        L.pushNumber(min);
+        L.setField(-2, "min");
+        L.pushNumber(max);
+        L.setField(-2, "max");
+        L.pushNumber((double)sum / count);
+        L.setField(-2, "mean");
+        L.pushNumber(percentile(0.5));
+        L.setField(-2, "p50");
+        L.pushNumber(percentile(0.9));
+        L.setField(-2, "p90");
+        L.pushNumber(percentile(0.99));
+        L.setField(-2, "p99");
+      }
+    }
+  }
+}
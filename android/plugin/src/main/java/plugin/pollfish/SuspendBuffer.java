@@ -0,0 +1,207 @@
+//
+// SuspendBuffer.java
+// Pollfish Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import java.util.Arrays;
+
+/**
+ * Holds the events raised while the Corona runtime is suspended, so they are delivered together
+ * when it resumes instead of piling up as one runtime task each.
+ * <p/>
+ * Events are coalesced as they arrive: a "loaded" or "failed" event replaces the previous event
+ * of the same phase, since only the latest outcome of a request is still true on resume. When the
+ * buffer is full the oldest event, or the new one, is dropped according to {@link Drop}. A
+ * "completed" event is never coalesced or dropped (it is a reward), so it is kept even if the
+ * buffer has to grow past its size. Both are counted in the stats. Confined to the plugin thread.
+ */
+final class SuspendBuffer
+{
+  static final int DEFAULT_SIZE = 32;
+
+  // options.suspendBuffer.drop, which event gives way when the buffer is full
+  enum Drop
+  {
+    OLDEST,
+    NEWEST
+  }
+
+  private final int size;
+  private final Drop drop;
+  private final SurveyStats stats;
+
+  private PollfishEvent[] events;
+  private int end = 0;                        // slots in use, removed events leave a null behind
+  private int count = 0;                      // events held
+  private int lastLoaded = -1;                // slot of the "loaded" event held, if any
+  private int lastFailed = -1;                // slot of the "failed" event held, if any
+  private int oldest = 0;                     // no droppable event is held before this slot
+  private boolean isSuspended = false;
+
+  SuspendBuffer(int size, Drop drop, SurveyStats stats)
+  {
+    this.size = size;
+    this.drop = drop;
+    this.stats = stats;
+    events = new PollfishEvent[size];
+  }
+
+  void suspend()
+  {
+    isSuspended = true;
+  }
+
+  boolean isSuspended()
+  {
+    return isSuspended;
+  }
+
+  // keep an event until resume(), the buffer owns it from now on
+  void add(PollfishEvent event)
+  {
+    final Object phase = event.getObject(PollfishEvent.Field.PHASE);
+    final boolean isKept = LuaLoader.PHASE_COMPLETED.equals(phase);
+
+    // replace the previous event of a coalesced phase
+    if (LuaLoader.PHASE_LOADED.equals(phase)) {
+      if (lastLoaded >= 0) {
+        remove(lastLoaded);
+        stats.count(SurveyStats.Counter.EVENTS_COALESCED);
+      }
+    }
+    else if (LuaLoader.PHASE_FAILED.equals(phase)) {
+      if (lastFailed >= 0) {
+        remove(lastFailed);
+        stats.count(SurveyStats.Counter.EVENTS_COALESCED);
+      }
+    }
+
+    if ((count >= size) && ! isKept) {
+      int slot = (drop == Drop.OLDEST) ? oldestDroppable() : -1;
+      stats.count(SurveyStats.Counter.EVENTS_DROPPED);
+      if (slot < 0) {
+        event.recycle();
+        return;
+      }
+      remove(slot);
+    }
+
+    if (end == events.length) {
+      compact();
+    }
+
+    if (LuaLoader.PHASE_LOADED.equals(phase)) {
+      lastLoaded = end;
+    }
+    else if (LuaLoader.PHASE_FAILED.equals(phase)) {
+      lastFailed = end;
+    }
+
+    events[end++] = event;
+    count++;
+  }
+
+  // end the suspension, returns the buffered events oldest first (empty if there are none)
+  PollfishEvent[] resume()
+  {
+    isSuspended = false;
+
+    PollfishEvent[] batch = new PollfishEvent[count];
+    int n = 0;
+    for (int i = 0; i < end; i++) {
+      if (events[i] != null) {
+        batch[n++] = events[i];
+      }
+    }
+
+    clear(false);
+    return batch;
+  }
+
+  // release all buffered events
+  void clear()
+  {
+    clear(true);
+    isSuspended = false;
+  }
+
+  private void clear(boolean recycle)
+  {
+    for (int i = 0; i < end; i++) {
+      if (recycle && (events[i] != null)) {
+        events[i].recycle();
+      }
+      events[i] = null;
+    }
+    end = 0;
+    count = 0;
+    lastLoaded = -1;
+    lastFailed = -1;
+    oldest = 0;
+
+    // a burst of kept events may have grown the array
+    if (events.length > size) {
+      events = new PollfishEvent[size];
+    }
+  }
+
+  // slot of the oldest event that is not kept, or -1
+  // droppable events are only ever added at the end, so the search resumes where it left off
+  private int oldestDroppable()
+  {
+    while (oldest < end) {
+      PollfishEvent event = events[oldest];
+      if ((event != null) && ! LuaLoader.PHASE_COMPLETED.equals(event.getObject(PollfishEvent.Field.PHASE))) {
+        return oldest;
+      }
+      oldest++;
+    }
+    return -1;
+  }
+
+  private void remove(int slot)
+  {
+    events[slot].recycle();
+    events[slot] = null;
+    count--;
+
+    if (slot == lastLoaded) {
+      lastLoaded = -1;
+    }
+    else if (slot == lastFailed) {
+      lastFailed = -1;
+    }
+  }
+
+  // close the gaps left by removed events, and grow the array if it is still full (kept events only)
+  private void compact()
+  {
+    int n = 0;
+    for (int i = 0; i < end; i++) {
+      PollfishEvent event = events[i];
+      if (event == null) {
+        continue;
+      }
+      if (i == lastLoaded) {
+        lastLoaded = n;
+      }
+      else if (i == lastFailed) {
+        lastFailed = n;
+      }
+      events[i] = null;
+      events[n++] = event;
+    }
+    end = n;
+    oldest = 0;
+
+    if (end == events.length) {
+      events = Arrays.copyOf(events, end * 2);
+    }
+  }
+}
@@ -0,0 +1,149 @@
+//
+// UiCommandCoalescer.java
+// Pollfish Plugin
+//
+// Copyright (c) 2016 CoronaLabs inc. All rights reserved.
+//
+
+// @formatter:off
+
+package plugin.pollfish;
+
+import android.app.Activity;
+
+import com.pollfish.builder.Params;
+
+/**
+ * Collapses the SDK calls made on the UI thread into the latest intended state.
+ * <p/>
+ * load(), show() and hide() only record what the SDK should end up doing: a pending load with
+ * its params, and whether the survey should be visible or hidden. At most one task is posted
+ * to the UI thread at a time, and it applies whatever is pending when it runs, so a burst of
+ * show / hide / load requests queued behind a frame turns into one initWith and at most one
+ * show or hide. A new load drops a pending show or hide, since that was meant for the survey
+ * the load replaces.
+ */
+final class UiCommandCoalescer
+{
+  // trace sections
+  private static final String TRACE_UI_APPLY     = "ui.apply";
+  private static final String TRACE_UI_INIT_WITH = "ui.initWith";
+  private static final String TRACE_UI_SHOW      = "ui.show";
+  private static final String TRACE_UI_HIDE      = "ui.hide";
+
+  private enum Visibility
+  {
+    UNCHANGED,
+    SHOWN,
+    HIDDEN
+  }
+
+  private final Runnable applyTask = PluginTrace.wrap(TRACE_UI_APPLY, this::apply);
+
+  private volatile PollfishGateway gateway = PollfishGateway.SDK;
+
+  private Activity loadActivity = null;
+  private Params loadParams = null;                // non-null while a load is pending
+  private boolean hideAfterLoad = false;           // custom mode, the survey is not shown automatically
+  private Visibility visibility = Visibility.UNCHANGED;
+  private boolean isPosted = false;                // applyTask is waiting for the UI thread
+
+  void setGateway(PollfishGateway gateway)
+  {
+    this.gateway = gateway;
+  }
+
+  // initialize the SDK with the params (replaces any pending load)
+  synchronized void load(Activity activity, Params params, boolean hideAfterLoad)
+  {
+    loadActivity = activity;
+    loadParams = params;
+    this.hideAfterLoad = hideAfterLoad;
+    visibility = Visibility.UNCHANGED;
+    post(activity);
+  }
+
+  synchronized void show(Activity activity)
+  {
+    visibility = Visibility.SHOWN;
+    post(activity);
+  }
+
+  synchronized void hide(Activity activity)
+  {
+    visibility = Visibility.HIDDEN;
+    post(activity);
+  }
+
+  // drop everything pending, a task already posted finds nothing to do
+  synchronized void clear()
+  {
+    loadActivity = null;
+    loadParams = null;
+    hideAfterLoad = false;
+    visibility = Visibility.UNCHANGED;
+  }
+
+  private void post(Activity activity)
+  {
+    if (! isPosted) {
+      isPosted = true;
+      activity.runOnUiThread(applyTask);
+    }
+  }
+
+  // on the UI thread
+  private void apply()
+  {
+    final Activity activity;
+    final Params params;
+    Visibility target;
+
+    // take the pending state, requests made from now on post a new task
+    synchronized (this) {
+      activity = loadActivity;
+      params = loadParams;
+      target = visibility;
+      if ((params != null) && hideAfterLoad && (target == Visibility.UNCHANGED)) {
+        target = Visibility.HIDDEN;
+      }
+
+      loadActivity = null;
+      loadParams = null;
+      hideAfterLoad = false;
+      visibility = Visibility.UNCHANGED;
+      isPosted = false;
+    }
+
+    final PollfishGateway sdk = gateway;
+
+    if (params != null) {
+      PluginTrace.begin(TRACE_UI_INIT_WITH);
+      try {
+        sdk.initWith(activity, params);
+      }
+      finally {
+        PluginTrace.end(TRACE_UI_INIT_WITH);
+      }
+    }
+
+    if (target == Visibility.SHOWN) {
+      PluginTrace.begin(TRACE_UI_SHOW);
+      try {
+        sdk.show();
+      }
+      finally {
+        PluginTrace.end(TRACE_UI_SHOW);
+      }
+    }
+    else if (target == Visibility.HIDDEN) {
+      PluginTrace.begin(TRACE_UI_HIDE);
+      try {
+        sdk.hide();
+      }
+      finally {
+        PluginTrace.end(TRACE_UI_HIDE);
+      }
+    }
+  }
+}
@@ -43,6 +43,26 @@ function lib.setUserDetails()
     showWarning("pollfish.setUserDetails()")
 end
 
+function lib.pollEvents()
+    showWarning("pollfish.pollEvents()")
+    return {}, 0
+end
+
+function lib.getSurveyInfo()
+    showWarning("pollfish.getSurveyInfo()")
+    return {}
+end
+
+function lib.getLog()
+    showWarning("pollfish.getLog()")
+    return {}
+end
+
+function lib.getStats()
+    showWarning("pollfish.getStats()")
+    return {}
+end
+
 -------------------------------------------------------------------------------
 -- END
 -------------------------------------------------------------------------------